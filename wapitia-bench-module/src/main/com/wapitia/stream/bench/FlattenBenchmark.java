@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream.bench;
+
+import com.wapitia.stream.Streams;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Throughput of {@code Streams.streamFlatten} across the number of sources,
+ * the total number of elements, the cost of the comparator and the way
+ * consecutive keys are spread over the sources.
+ *
+ * <p>The keys {@code 0 .. total - 1} are dealt out to the sources:
+ * <ul>
+ * <li>{@code interleaved} round robin, so the winner changes every
+ *     element;</li>
+ * <li>{@code random} to a source picked at random for each key;</li>
+ * <li>{@code clustered} in runs of random length, averaging
+ *     {@value #MEAN_RUN} keys, to a source picked at random for each
+ *     run.</li>
+ * </ul>
+ *
+ * <p>The {@code costly} comparator burns a fixed amount of CPU on each call,
+ * standing in for comparisons of strings or composite keys, so the number
+ * of comparisons per element shows through.
+ *
+ * @author Corey Morgan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FlattenBenchmark {
+
+    static final int MEAN_RUN = 64;
+    static final long COMPARE_TOKENS = 16L;
+
+    @Param({"2", "16", "256"})
+    public int sources;
+
+    @Param({"65536", "1048576"})
+    public int total;
+
+    @Param({"natural", "costly"})
+    public String comparator;
+
+    @Param({"interleaved", "random", "clustered"})
+    public String spread;
+
+    private List<List<Long>> data;
+    private Comparator<Long> comp;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(42L);
+        data = new ArrayList<>(sources);
+        for (int i = 0; i < sources; i++) {
+            data.add(new ArrayList<>(total / sources + 1));
+        }
+        int source = 0;
+        int run = 0;
+        for (long key = 0L; key < total; key++) {
+            switch (spread) {
+            case "interleaved":
+                source = (int) (key % sources);
+                break;
+            case "random":
+                source = random.nextInt(sources);
+                break;
+            case "clustered":
+                if (run == 0) {
+                    source = random.nextInt(sources);
+                    run = 1 + random.nextInt(2 * MEAN_RUN);
+                }
+                run--;
+                break;
+            default:
+                throw new IllegalArgumentException(spread);
+            }
+            data.get(source).add(key);
+        }
+        comp = "costly".equals(comparator)
+            ? (a, b) -> {
+                Blackhole.consumeCPU(COMPARE_TOKENS);
+                return a.compareTo(b);
+            }
+            : Comparator.<Long>naturalOrder();
+    }
+
+    @Benchmark
+    public void flatten(final Blackhole bh) {
+        final Stream<Long> merged = Streams.streamFlatten(
+            data.stream().map(List::stream).collect(Collectors.toList()),
+            comp);
+        merged.forEach(bh::consume);
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream.bench;
+
+import com.wapitia.collections.IteratorStack;
+import com.wapitia.collections.PeekingIterator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of peeking through {@link IteratorStack}, compared with the
+ * single-consumer and concurrent {@link PeekingIterator}s.
+ *
+ * <p>Each pass peeks at and pops every element of a list, pushing one in
+ * every {@code pushEvery} back and popping it again, the pattern of a merge
+ * looking ahead at its sources.
+ *
+ * @author Corey Morgan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IteratorStackBenchmark {
+
+    @Param({"65536"})
+    public int size;
+
+    @Param({"8"})
+    public int pushEvery;
+
+    private List<Long> data;
+
+    @Setup
+    public void setup() {
+        data = new ArrayList<>(size);
+        for (long i = 0L; i < size; i++) {
+            data.add(i);
+        }
+    }
+
+    @Benchmark
+    public void iteratorStack(final Blackhole bh) {
+        final IteratorStack<Long> stack = new IteratorStack<>(data.iterator());
+        int i = 0;
+        while (!stack.empty()) {
+            bh.consume(stack.peek());
+            final Long item = stack.pop();
+            if (++i % pushEvery == 0) {
+                stack.push(item);
+                bh.consume(stack.pop());
+            }
+        }
+    }
+
+    @Benchmark
+    public void peeking(final Blackhole bh) {
+        drain(PeekingIterator.of(data.iterator()), bh);
+    }
+
+    @Benchmark
+    public void peekingConcurrent(final Blackhole bh) {
+        drain(PeekingIterator.concurrent(data.iterator()), bh);
+    }
+
+    private void drain(final PeekingIterator<Long> it, final Blackhole bh) {
+        int i = 0;
+        while (it.hasNext()) {
+            bh.consume(it.peek());
+            final Long item = it.next();
+            if (++i % pushEvery == 0) {
+                it.push(item);
+                bh.consume(it.next());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+
+package com.wapitia.stream.bench;
+
+import com.wapitia.stream.Streams;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Throughput of {@code Streams.streamFlatten} with a
+ * {@code Comparator.comparing} comparator against the key-caching
+ * {@code streamFlattenByLong} and {@code streamFlattenBy}, on records keyed
+ * by a date or by a string, across the number of sources.
+ *
+ * <p>The records are dealt out to the sources at random, so the winner
+ * changes often and the comparisons per element approach {@code log k}.
+ * The {@code date} key is merged by epoch day as a {@code long}, the
+ * {@code string} key as the string itself; the string keys share a long
+ * prefix, so each string comparison does real work.
+ *
+ * @author Corey Morgan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class KeyedMergeBenchmark {
+
+    /**
+     * A record sorted on one of its fields.
+     */
+    static final class Record {
+
+        final LocalDate date;
+        final String id;
+
+        Record(final LocalDate date, final String id) {
+            this.date = date;
+            this.id = id;
+        }
+    }
+
+    @Param({"2", "16", "256"})
+    public int sources;
+
+    @Param({"262144"})
+    public int total;
+
+    @Param({"date", "string"})
+    public String key;
+
+    private List<List<Record>> data;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(42L);
+        data = new ArrayList<>(sources);
+        for (int i = 0; i < sources; i++) {
+            data.add(new ArrayList<>(total / sources + 1));
+        }
+        final LocalDate start = LocalDate.of(2000, 1, 1);
+        for (int n = 0; n < total; n++) {
+            // a few records a day, ids in the same order as the dates
+            data.get(random.nextInt(sources)).add(new Record(
+                start.plusDays(n / 4),
+                String.format("account-0000-%010d", n)));
+        }
+    }
+
+    private List<Stream<Record>> streams() {
+        return data.stream().map(List::stream).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public void comparator(final Blackhole bh) {
+        final Comparator<Record> comp = "date".equals(key)
+            ? Comparator.comparing((Record r) -> r.date)
+            : Comparator.comparing((Record r) -> r.id);
+        Streams.streamFlatten(streams(), comp).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void keyed(final Blackhole bh) {
+        final Stream<Record> merged = "date".equals(key)
+            ? Streams.streamFlattenByLong(streams(), r -> r.date.toEpochDay())
+            : Streams.streamFlattenBy(streams(), (Record r) -> r.id);
+        merged.forEach(bh::consume);
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream.bench;
+
+import com.wapitia.stream.Streams;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compares the element-at-a-time path of {@code Streams.streamFlatten}
+ * ({@code tryAdvance}, as driven by an {@link Iterator}) with its run-aware
+ * bulk path ({@code forEachRemaining}, as driven by {@code forEach}).
+ *
+ * <p>Each source's keys come in runs of {@code runLength} consecutive
+ * winners. A run length of 1 is a perfectly interleaved merge, where the bulk
+ * path can't gain anything; long runs are clustered inputs, such as
+ * per-account transaction streams.
+ *
+ * @author Corey Morgan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MergeRunBenchmark {
+
+    @Param({"16", "256"})
+    public int sources;
+
+    @Param({"1", "64", "4096"})
+    public int runLength;
+
+    @Param({"1048576"})
+    public int total;
+
+    private List<List<Long>> data;
+
+    @Setup
+    public void setup() {
+        final int perSource = total / sources;
+        data = new ArrayList<>(sources);
+        for (int i = 0; i < sources; i++) {
+            final List<Long> keys = new ArrayList<>(perSource);
+            for (int j = 0; j < perSource; j++) {
+                final long block = j / runLength;
+                keys.add((block * sources + i) * runLength + j % runLength);
+            }
+            data.add(keys);
+        }
+    }
+
+    private Stream<Long> merged() {
+        return Streams.streamFlatten(
+            data.stream().map(List::stream).collect(Collectors.toList()),
+            Comparator.<Long>naturalOrder());
+    }
+
+    @Benchmark
+    public void elementwise(final Blackhole bh) {
+        final Iterator<Long> it = merged().iterator();
+        while (it.hasNext()) {
+            bh.consume(it.next());
+        }
+    }
+
+    @Benchmark
+    public void bulk(final Blackhole bh) {
+        merged().forEach(bh::consume);
+    }
+
+}
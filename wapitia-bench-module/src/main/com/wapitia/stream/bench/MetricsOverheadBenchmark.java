@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream.bench;
+
+import com.wapitia.stream.MetricsRegistry;
+import com.wapitia.stream.Streams;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The cost of counting a {@code Streams.streamFlatten} merge into
+ * {@code StreamMetrics}, against the same merge uncounted.
+ *
+ * @author Corey Morgan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MetricsOverheadBenchmark {
+
+    @Param({"16"})
+    public int sources;
+
+    @Param({"1048576"})
+    public int total;
+
+    private List<List<Long>> data;
+    private final MetricsRegistry registry = new MetricsRegistry();
+
+    @Setup
+    public void setup() {
+        data = new ArrayList<>(sources);
+        for (int i = 0; i < sources; i++) {
+            data.add(new ArrayList<>(total / sources));
+        }
+        for (long key = 0L; key < total; key++) {
+            data.get((int) (key % sources)).add(key);
+        }
+    }
+
+    private List<Stream<Long>> streams() {
+        return data.stream().map(List::stream).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public void plain(final Blackhole bh) {
+        Streams.streamFlatten(streams(), Comparator.<Long>naturalOrder())
+            .forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void instrumented(final Blackhole bh) {
+        try (Stream<Long> merged = Streams.streamFlatten(streams(),
+            Comparator.<Long>naturalOrder(),
+            registry.metrics("bench", sources)))
+        {
+            merged.forEach(bh::consume);
+        }
+    }
+
+}
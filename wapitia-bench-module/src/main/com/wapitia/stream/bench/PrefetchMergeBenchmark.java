@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream.bench;
+
+import com.wapitia.stream.Streams;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Compares the plain merge of {@code Streams.streamFlatten} with the
+ * prefetching merge of {@code Streams.streamFlattenPrefetch} over sources
+ * that stall for {@code latencyMicros} every {@code blockSize} elements, as
+ * a file or socket read would.
+ *
+ * @author Corey Morgan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PrefetchMergeBenchmark {
+
+    @Param({"8", "64"})
+    public int sources;
+
+    @Param({"200", "2000"})
+    public int latencyMicros;
+
+    @Param({"256"})
+    public int blockSize;
+
+    @Param({"65536"})
+    public int total;
+
+    @Param({"512"})
+    public int depth;
+
+    private List<Stream<Long>> slowSources() {
+        final int perSource = total / sources;
+        return IntStream.range(0, sources)
+            .mapToObj(i -> IntStream.range(0, perSource)
+                .peek(j -> {
+                    if (j % blockSize == 0) {
+                        LockSupport.parkNanos(latencyMicros * 1000L);
+                    }
+                })
+                .mapToObj(j -> (long) j * sources + i))
+            .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public void direct(final Blackhole bh) {
+        Streams.streamFlatten(slowSources(), Comparator.<Long>naturalOrder())
+            .forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void prefetch(final Blackhole bh) {
+        try (Stream<Long> merged = Streams.streamFlattenPrefetch(
+            slowSources(), Comparator.<Long>naturalOrder(), depth))
+        {
+            merged.forEach(bh::consume);
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.collections;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link PeekingIterator} that may be shared between threads.
+ *
+ * <p>Pushed back and looked ahead items live on a lock-free (Treiber)
+ * stack, so taking or peeking an item that is already buffered costs a
+ * compare-and-set and no monitor. The backing iterator isn't thread safe,
+ * so reading a fresh item from it is done under a lock, which is held only
+ * while the stack is empty.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> items to be looked at
+ */
+class ConcurrentPeekingIterator<T> implements PeekingIterator<T> {
+
+    private static final class Node<T> {
+        final T item;
+        final Node<T> below;
+
+        Node(final T item, final Node<T> below) {
+            this.item = item;
+            this.below = below;
+        }
+    }
+
+    private final Iterator<T> iterator;
+
+    private final AtomicReference<Node<T>> top = new AtomicReference<>();
+
+    // guards reads from the backing iterator
+    private final ReentrantLock pull = new ReentrantLock();
+
+    /**
+     * Wrap an iterator to allow peeking and push back from many threads.
+     *
+     * @param iterator possibly endless iterator of fresh items. Not null.
+     */
+    ConcurrentPeekingIterator(final Iterator<T> iterator) {
+        Objects.requireNonNull(iterator);
+        this.iterator = iterator;
+    }
+
+    @Override
+    public boolean hasNext() {
+        boolean result = top.get() != null;
+        if (!result) {
+            pull.lock();
+            try {
+                result = top.get() != null || iterator.hasNext();
+            } finally {
+                pull.unlock();
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public T next() {
+        while (true) {
+            final Node<T> node = top.get();
+            if (node != null) {
+                if (top.compareAndSet(node, node.below)) {
+                    return node.item;
+                }
+            } else {
+                pull.lock();
+                try {
+                    if (top.get() == null) {
+                        return iterator.next();
+                    }
+                } finally {
+                    pull.unlock();
+                }
+            }
+        }
+    }
+
+    @Override
+    public T peek() {
+        final Node<T> node = top.get();
+        final T result;
+        if (node != null) {
+            result = node.item;
+        } else {
+            pull.lock();
+            try {
+                final Node<T> pushed = top.get();
+                if (pushed != null) {
+                    result = pushed.item;
+                } else {
+                    result = iterator.next();
+                    push(result);
+                }
+            } finally {
+                pull.unlock();
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void push(final T item) {
+        Node<T> below;
+        Node<T> node;
+        do {
+            below = top.get();
+            node = new Node<>(item, below);
+        } while (!top.compareAndSet(below, node));
+    }
+}
@@ -47,6 +47,10 @@ import java.util.Stack;
  *   {@link #empty()}, but hasn't implemented the indexed or terminating
  *   methods that {@link Stack} has to offer.
  *
+ * <p>Every operation here goes through the synchronized {@link Stack}.
+ * For peeking at an iterator from a single thread, as a stream merge does,
+ * prefer the unsynchronized {@link PeekingIterator#of(Iterator)}.
+ *
  * @author Corey Morgan
  *
  * @param <T> items to be looked at
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.collections;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An {@link Iterator} that can look at its next item without consuming it,
+ * and take items back.
+ * Pushed back items come out first, most recently pushed first, ahead of
+ * the rest of the iteration.
+ *
+ * <p>Two flavors are offered. {@link #of(Iterator)} is for an iterator read
+ * by a single thread, as each source of a merge is, and takes no locks at
+ * all. {@link #concurrent(Iterator)} may be shared between threads.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> items to be looked at
+ * @see IteratorStack
+ */
+public interface PeekingIterator<T> extends Iterator<T> {
+
+    /**
+     * Look at the next item without consuming it.
+     *
+     * @return the item that {@link #next()} would return
+     * @throws NoSuchElementException if there are no more items
+     */
+    T peek();
+
+    /**
+     * Push an item back, so it is the next item to come out.
+     *
+     * @param item item to push, of the same type as the iterator items
+     */
+    void push(T item);
+
+    /**
+     * A peeking iterator for use by a single thread.
+     * It holds a single look-ahead item and an unsynchronized push back
+     * stack, and takes no locks.
+     *
+     * @param <T> items to be looked at
+     * @param iterator possibly endless iterator of fresh items. Not null.
+     * @return a new single consumer peeking iterator
+     */
+    static <T> PeekingIterator<T> of(final Iterator<T> iterator) {
+        return new SingleConsumerPeekingIterator<>(iterator);
+    }
+
+    /**
+     * A peeking iterator that may be shared between threads.
+     * Pushed back and looked ahead items are taken with lock-free
+     * compare-and-set operations; only reads from the backing iterator,
+     * which isn't thread safe itself, are done under a lock.
+     *
+     * @param <T> items to be looked at
+     * @param iterator possibly endless iterator of fresh items. Not null.
+     * @return a new thread safe peeking iterator
+     */
+    static <T> PeekingIterator<T> concurrent(final Iterator<T> iterator) {
+        return new ConcurrentPeekingIterator<>(iterator);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.collections;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Objects;
+
+/**
+ * A {@link PeekingIterator} for a single consumer thread.
+ * Peeking fills a single look-ahead slot, and pushed back items go on an
+ * {@link ArrayDeque}, created only when first needed.
+ * Nothing here is synchronized.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> items to be looked at
+ */
+class SingleConsumerPeekingIterator<T> implements PeekingIterator<T> {
+
+    // stands in for null items, which ArrayDeque doesn't hold
+    private static final Object NULL = new Object();
+
+    private final Iterator<T> iterator;
+
+    // the look-ahead item, valid when ahead is true
+    private T next = null;
+    private boolean ahead = false;
+
+    private ArrayDeque<Object> pushed = null;
+
+    /**
+     * Wrap an iterator to allow peeking and push back.
+     *
+     * @param iterator possibly endless iterator of fresh items. Not null.
+     */
+    SingleConsumerPeekingIterator(final Iterator<T> iterator) {
+        Objects.requireNonNull(iterator);
+        this.iterator = iterator;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return ahead || (pushed != null && !pushed.isEmpty())
+            || iterator.hasNext();
+    }
+
+    @Override
+    public T next() {
+        final T result;
+        if (pushed != null && !pushed.isEmpty()) {
+            result = unmask(pushed.pop());
+        } else if (ahead) {
+            result = next;
+            next = null;
+            ahead = false;
+        } else {
+            result = iterator.next();
+        }
+        return result;
+    }
+
+    @Override
+    public T peek() {
+        final T result;
+        if (pushed != null && !pushed.isEmpty()) {
+            result = unmask(pushed.peek());
+        } else {
+            if (!ahead) {
+                next = iterator.next();
+                ahead = true;
+            }
+            result = next;
+        }
+        return result;
+    }
+
+    @Override
+    public void push(final T item) {
+        if (pushed == null) {
+            pushed = new ArrayDeque<>();
+        }
+        pushed.push(item == null ? NULL : item);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T unmask(final Object item) {
+        return item == NULL ? null : (T) item;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import java.util.ArrayDeque;
+
+/**
+ * The push back of a {@link SeekableSource}, over the sorted elements a
+ * subclass reads and seeks among.
+ * Pushed back items come out first, most recently pushed first, as
+ * {@link com.wapitia.collections.PeekingIterator} has it, and go on an
+ * {@link ArrayDeque} created only when first needed. A seek drops them,
+ * as they have no place among the sorted elements.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> Type of the source elements
+ */
+abstract class AbstractSeekableSource<T> implements SeekableSource<T> {
+
+    // stands in for null items, which ArrayDeque doesn't hold
+    private static final Object NULL = new Object();
+
+    private ArrayDeque<Object> pushed = null;
+
+    /**
+     * Is there a sorted element left to read?
+     */
+    abstract boolean hasNextSorted();
+
+    /**
+     * Look at the next sorted element without consuming it.
+     *
+     * @throws java.util.NoSuchElementException when none is left
+     */
+    abstract T peekSorted();
+
+    /**
+     * Consume the next sorted element.
+     *
+     * @throws java.util.NoSuchElementException when none is left
+     */
+    abstract T nextSorted();
+
+    /**
+     * Move to the first sorted element not before {@code key}.
+     */
+    abstract void seekSorted(T key);
+
+    @Override
+    public final boolean hasNext() {
+        return (pushed != null && !pushed.isEmpty()) || hasNextSorted();
+    }
+
+    @Override
+    public final T peek() {
+        final T result = pushed != null && !pushed.isEmpty()
+            ? unmask(pushed.peek())
+            : peekSorted();
+        return result;
+    }
+
+    @Override
+    public final T next() {
+        final T result = pushed != null && !pushed.isEmpty()
+            ? unmask(pushed.pop())
+            : nextSorted();
+        return result;
+    }
+
+    @Override
+    public final void push(final T item) {
+        if (pushed == null) {
+            pushed = new ArrayDeque<>();
+        }
+        pushed.push(item == null ? NULL : item);
+    }
+
+    @Override
+    public final void seek(final T key) {
+        if (pushed != null) {
+            pushed.clear();
+        }
+        seekSorted(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T unmask(final Object item) {
+        return item == NULL ? null : (T) item;
+    }
+}
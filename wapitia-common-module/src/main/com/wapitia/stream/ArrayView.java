@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A read-only {@link java.util.List} view of a range of an array.
+ * The range can be moved, so a single view can present each batch of a
+ * reused buffer in turn.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> type of the items
+ */
+class ArrayView<T> extends AbstractList<T> implements RandomAccess {
+
+    private Object[] array;
+    private int offset;
+    private int size;
+
+    /**
+     * View a range of an array.
+     *
+     * @param array  the backing array
+     * @param offset where the range begins
+     * @param size   length of the range
+     */
+    ArrayView(final Object[] array, final int offset, final int size) {
+        reset(array, offset, size);
+    }
+
+    /**
+     * Move the view to another range.
+     *
+     * @param array  the backing array
+     * @param offset where the range begins
+     * @param size   length of the range
+     * @return this view
+     */
+    ArrayView<T> reset(final Object[] array, final int offset, final int size) {
+        this.array = array;
+        this.offset = offset;
+        this.size = size;
+        return this;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(
+                "Index: " + index + ", Size: " + size);
+        }
+        return (T) array[offset + index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
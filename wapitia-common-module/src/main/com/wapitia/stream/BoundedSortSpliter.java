@@ -0,0 +1,190 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * {@code BoundedSortSpliter<T>} puts a nearly sorted source in order, one
+ * whose elements are at most a slack out of place, holding back only
+ * the elements within the slack of the newest one in a priority queue.
+ *
+ * <p>The slack is either a count, no element coming after more than
+ * {@code slack} elements that should follow it, or a distance in a
+ * {@code long} key, no element's key being more than {@code slack} below
+ * a key seen before it. Equal elements keep their source order.
+ *
+ * <p>An element coming later than the slack allows, one that would have
+ * to go before an element already passed along, is late. It is passed to
+ * the {@code late} handler, and left out, or fails the traversal with an
+ * {@link IllegalStateException} when there is no handler.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> Shared type of elements in the input and output stream
+ */
+class BoundedSortSpliter<T> extends Spliterators.AbstractSpliterator<T> {
+
+    private final Spliterator<T> source;
+    private final ToLongFunction<? super T> key;
+    private final long slack;
+    private final Consumer<? super T> late;
+    private final Comparator<Slot<T>> slotComp;
+    private final PriorityQueue<Slot<T>> queue;
+    private final Consumer<T> offer = this::offer;
+    private Slot<T> last;
+    private long newestKey = Long.MIN_VALUE;
+    private long seq;
+
+    /** An element held back, with its key and arrival number. */
+    private static final class Slot<T> {
+
+        final T item;
+        final long key;
+        final long seq;
+
+        Slot(final T item, final long key, final long seq) {
+            this.item = item;
+            this.key = key;
+            this.seq = seq;
+        }
+    }
+
+    /**
+     * Sort a source whose elements are at most {@code slack} places out.
+     *
+     * @param source the nearly sorted source. Not null.
+     * @param comp   the order to restore. Not null.
+     * @param slack  how many places an element may be out, at least 0
+     * @param late   takes the elements out by more, or null to fail on them
+     */
+    BoundedSortSpliter(
+        final Spliterator<T> source,
+        final Comparator<? super T> comp,
+        final int slack,
+        final Consumer<? super T> late)
+    {
+        this(source, null, Objects.requireNonNull(comp), slack, late);
+    }
+
+    /**
+     * Sort a source by a {@code long} key, each element's key being at
+     * most {@code slack} below any key before it.
+     *
+     * @param source the nearly sorted source. Not null.
+     * @param key    the key to sort on. Not null.
+     * @param slack  how far a key may be below an earlier one, at least 0
+     * @param late   takes the elements out by more, or null to fail on them
+     */
+    BoundedSortSpliter(
+        final Spliterator<T> source,
+        final ToLongFunction<? super T> key,
+        final long slack,
+        final Consumer<? super T> late)
+    {
+        this(source, Objects.requireNonNull(key), null, slack, late);
+    }
+
+    private BoundedSortSpliter(
+        final Spliterator<T> source,
+        final ToLongFunction<? super T> key,
+        final Comparator<? super T> comp,
+        final long slack,
+        final Consumer<? super T> late)
+    {
+        super(source.estimateSize(), Spliterator.ORDERED);
+        if (slack < 0) {
+            throw new IllegalArgumentException("slack < 0: " + slack);
+        }
+        this.source = source;
+        this.key = key;
+        this.slack = slack;
+        this.late = late;
+        final Comparator<Slot<T>> order = key != null
+            ? (a, b) -> Long.compare(a.key, b.key)
+            : (a, b) -> comp.compare(a.item, b.item);
+        this.slotComp = order.thenComparingLong(s -> s.seq);
+        this.queue = new PriorityQueue<>(
+            key != null ? 16 : (int) Math.min(slack, 1023) + 1, slotComp);
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super T> action) {
+        Objects.requireNonNull(action);
+        while (!ready() && source.tryAdvance(offer)) {
+            // fill the queue until its head can't be overtaken
+        }
+        last = queue.poll();
+        final boolean advanced = last != null;
+        if (advanced) {
+            action.accept(last.item);
+        }
+        return advanced;
+    }
+
+    /**
+     * Whether no element to come can go before the head of the queue.
+     */
+    private boolean ready() {
+        final boolean result;
+        if (key == null) {
+            result = queue.size() > slack;
+        } else {
+            result = !queue.isEmpty()
+                && newestKey >= Long.MIN_VALUE + slack
+                && newestKey - slack >= queue.peek().key;
+        }
+        return result;
+    }
+
+    private void offer(final T item) {
+        final Slot<T> slot = new Slot<>(item,
+            key != null ? key.applyAsLong(item) : 0L, seq++);
+        if (last != null && slotComp.compare(slot, last) < 0) {
+            if (late == null) {
+                throw new IllegalStateException(
+                    "element out of order by more than the slack: " + item);
+            }
+            late.accept(item);
+        } else {
+            queue.add(slot);
+            newestKey = Math.max(newestKey, slot.key);
+        }
+    }
+}
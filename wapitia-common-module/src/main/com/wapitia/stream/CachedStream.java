@@ -0,0 +1,433 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A stream read once and replayed to any number of readers, each reading
+ * it through a {@link Stream} of its own, at its own pace.
+ *
+ * <p>The incoming stream is read only as the readers get ahead of it, into
+ * a buffer growing in segments of {@value #SEGMENT_SIZE} elements. Until
+ * the cache is {@link #seal() sealed}, a new reader can start from the
+ * first element, so every segment is kept. Once sealed, no new reader can
+ * start, and each segment is let go as soon as every live reader has passed
+ * it; a reader's stream stops holding the cache back when it ends or is
+ * closed.
+ *
+ * <p>Given a {@link RecordSerializer} and a memory budget, the oldest
+ * segments are spilled to a temporary file whenever the buffered elements
+ * take more serialized bytes than the budget, and a reader coming to a
+ * spilled segment reads it back from the file.
+ *
+ * <p>The incoming stream is read by whichever reader is ahead, a segment
+ * at a time, while the other readers wait. Its failure is thrown to every
+ * reader reaching it. Close the cache to close the incoming stream and
+ * delete the spill file.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> type of the elements
+ */
+public final class CachedStream<T> implements AutoCloseable {
+
+    /** Number of elements in a buffer segment. */
+    public static final int SEGMENT_SIZE = 1024;
+
+    private final Stream<T> source;
+    private final RecordSerializer<T> serializer;
+    private final long memoryBudget;
+    private final Path tempDir;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // guarded by lock
+    private Iterator<T> upstream;
+    private final List<Segment> segments = new ArrayList<>();
+    private final List<Reader> readers = new ArrayList<>();
+    private long size = 0L;
+    private boolean ended = false;
+    private Throwable failure;
+    private boolean sealed = false;
+    private boolean closed = false;
+    private int freed = 0;
+    private int spilled = 0;
+    private long residentBytes = 0L;
+    private FileChannel spill;
+    private long spillEnd = 0L;
+
+    /**
+     * A run of {@value #SEGMENT_SIZE} elements, in memory or in the spill
+     * file, or let go.
+     */
+    private static final class Segment {
+        Object[] items = new Object[SEGMENT_SIZE];
+        int count = 0;
+        long bytes = 0L;
+        long offset = -1L;
+    }
+
+    /**
+     * Cache a stream, in memory or spilling to disk.
+     *
+     * @param source       the stream to cache. Not null.
+     * @param serializer   writes and reads spilled elements, or
+     *                     {@code null} to keep everything in memory
+     * @param memoryBudget serialized bytes of elements to keep in memory
+     * @param tempDir      where to put the spill file, or {@code null}
+     *                     for the default temporary-file directory
+     */
+    CachedStream(
+        final Stream<T> source,
+        final RecordSerializer<T> serializer,
+        final long memoryBudget,
+        final Path tempDir)
+    {
+        this.source = Objects.requireNonNull(source);
+        this.serializer = serializer;
+        this.memoryBudget = memoryBudget;
+        this.tempDir = tempDir;
+    }
+
+    /**
+     * A new stream of all elements, from the first.
+     * Close it, or read it to the end, so that it doesn't hold on to the
+     * buffer once the cache is sealed.
+     *
+     * @return a stream of the cached elements
+     * @throws IllegalStateException when the cache is sealed or closed
+     */
+    public Stream<T> stream() {
+        final Reader reader = new Reader();
+        lock.lock();
+        try {
+            if (sealed || closed) {
+                throw new IllegalStateException(
+                    closed ? "cache is closed" : "cache is sealed");
+            }
+            readers.add(reader);
+        } finally {
+            lock.unlock();
+        }
+        final Stream<T> result = StreamSupport.stream(reader, false)
+            .onClose(reader::release);
+        return result;
+    }
+
+    /**
+     * Start no new readers, so that the segments the live readers have all
+     * passed can be let go.
+     */
+    public void seal() {
+        lock.lock();
+        try {
+            sealed = true;
+            free();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Let go of the buffer, close the incoming stream and delete the spill
+     * file. Readers still reading fail.
+     */
+    @Override
+    public void close() {
+        final FileChannel file;
+        lock.lock();
+        try {
+            closed = true;
+            segments.clear();
+            readers.clear();
+            file = spill;
+            spill = null;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            if (file != null) {
+                file.close();
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            source.close();
+        }
+    }
+
+    /**
+     * Read up to the end of the last segment, or the end of the stream.
+     */
+    private void fill() {
+        if (upstream == null) {
+            upstream = source.iterator();
+        }
+        Segment tail = segments.isEmpty()
+            ? null
+            : segments.get(segments.size() - 1);
+        if (tail == null || tail.count == SEGMENT_SIZE) {
+            tail = new Segment();
+            segments.add(tail);
+        }
+        try {
+            while (tail.count < SEGMENT_SIZE && !ended) {
+                if (upstream.hasNext()) {
+                    final T item = upstream.next();
+                    tail.items[tail.count++] = item;
+                    size++;
+                    if (serializer != null) {
+                        final int bytes = serializer.sizeOf(item);
+                        tail.bytes += bytes;
+                        residentBytes += bytes;
+                    }
+                } else {
+                    ended = true;
+                }
+            }
+        } catch (final RuntimeException | Error e) {
+            failure = e;
+            ended = true;
+        }
+        if (serializer != null && residentBytes > memoryBudget) {
+            spillOldest();
+        }
+    }
+
+    /**
+     * Move the oldest full segments still in memory to the spill file until
+     * the rest fit the budget.
+     */
+    private void spillOldest() {
+        spilled = Math.max(spilled, freed);
+        while (residentBytes > memoryBudget
+            && spilled < segments.size() - 1)
+        {
+            final Segment segment = segments.get(spilled++);
+            if (segment.items != null) {
+                write(segment);
+                segment.items = null;
+                residentBytes -= segment.bytes;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void write(final Segment segment) {
+        try {
+            if (spill == null) {
+                final Path path = tempDir == null
+                    ? Files.createTempFile("wapitia-cache-", ".seg")
+                    : Files.createTempFile(tempDir, "wapitia-cache-", ".seg");
+                spill = FileChannel.open(path, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+            }
+            final ByteBuffer buffer =
+                ByteBuffer.allocate(Math.toIntExact(segment.bytes));
+            for (int i = 0; i < segment.count; i++) {
+                serializer.write((T) segment.items[i], buffer);
+            }
+            buffer.flip();
+            segment.offset = spillEnd;
+            while (buffer.hasRemaining()) {
+                spillEnd += spill.write(buffer, spillEnd);
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Read a spilled segment back, while other threads go on.
+     */
+    private Object[] read(
+        final FileChannel file,
+        final long offset,
+        final long bytes,
+        final int count)
+    {
+        try {
+            final ByteBuffer buffer =
+                ByteBuffer.allocate(Math.toIntExact(bytes));
+            while (buffer.hasRemaining()) {
+                if (file.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("spill file is truncated");
+                }
+            }
+            buffer.flip();
+            final Object[] result = new Object[count];
+            for (int i = 0; i < count; i++) {
+                result[i] = serializer.read(buffer);
+            }
+            return result;
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Once sealed, let go of the segments every live reader has passed.
+     */
+    private void free() {
+        if (sealed) {
+            int passed = segments.size();
+            for (final Reader reader : readers) {
+                passed = Math.min(passed, reader.segment);
+            }
+            for (; freed < passed; freed++) {
+                final Segment segment = segments.get(freed);
+                if (segment.items != null) {
+                    residentBytes -= segment.bytes;
+                }
+                segment.items = null;
+                segment.offset = -1L;
+            }
+        }
+    }
+
+    /**
+     * One reader's traversal. It reads a segment at a time without taking
+     * the lock, taking it only to move to the next segment.
+     */
+    private final class Reader extends Spliterators.AbstractSpliterator<T> {
+
+        // guarded by lock: the segment this reader is on
+        int segment = 0;
+
+        private long pos = 0L;
+        private Object[] items;
+        private long base = 0L;
+        private int limit = 0;
+
+        Reader() {
+            super(Long.MAX_VALUE, Spliterator.ORDERED);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(final Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            final boolean result = pos - base < limit || fetch();
+            if (result) {
+                final T item = (T) items[(int) (pos - base)];
+                pos++;
+                action.accept(item);
+            }
+            return result;
+        }
+
+        /**
+         * Move on to the segment holding {@code pos}, reading more of the
+         * incoming stream when {@code pos} is at its end.
+         */
+        private boolean fetch() {
+            final boolean result;
+            final int index = (int) (pos / SEGMENT_SIZE);
+            Throwable thrown = null;
+            FileChannel file = null;
+            long offset = -1L;
+            long bytes = 0L;
+            lock.lock();
+            try {
+                if (closed) {
+                    throw new IllegalStateException("cache is closed");
+                }
+                segment = index;
+                while (pos >= size && !ended) {
+                    fill();
+                }
+                result = pos < size;
+                if (result) {
+                    final Segment s = segments.get(index);
+                    if (s.items == null && s.offset < 0L) {
+                        throw new IllegalStateException(
+                            "segment " + index + " is let go");
+                    }
+                    items = s.items;
+                    base = (long) index * SEGMENT_SIZE;
+                    limit = s.count;
+                    file = spill;
+                    offset = s.offset;
+                    bytes = s.bytes;
+                } else {
+                    readers.remove(this);
+                    thrown = failure;
+                }
+                free();
+            } finally {
+                lock.unlock();
+            }
+            if (result && items == null) {
+                items = read(file, offset, bytes, limit);
+            }
+            if (thrown instanceof RuntimeException) {
+                throw (RuntimeException) thrown;
+            } else if (thrown instanceof Error) {
+                throw (Error) thrown;
+            }
+            return result;
+        }
+
+        /**
+         * Stop holding the buffer back.
+         */
+        void release() {
+            lock.lock();
+            try {
+                if (readers.remove(this)) {
+                    free();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
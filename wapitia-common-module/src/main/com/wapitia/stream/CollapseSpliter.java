@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import com.wapitia.collections.PeekingIterator;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@code CollapseSpliter<T>} merges sorted sources as {@link FlatSpliter}
+ * does, collapsing each set of equal elements, within and across sources,
+ * into one, as an LSM compaction does.
+ *
+ * <p>Equal elements come off the {@link MergeHeap} in list order, ties
+ * going to the source listed first, so the set is folded with the combiner
+ * from the first listed source to the last: {@code combiner(combiner(a, b),
+ * c)}. A combiner keeping its first argument makes the first listed source
+ * win.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> Shared type of elements in the input and output stream
+ */
+class CollapseSpliter<T> extends Spliterators.AbstractSpliterator<T> {
+
+    private final List<Stream<T>> sources;
+    private final Comparator<? super T> comp;
+    private final BinaryOperator<T> combiner;
+    private MergeHeap<T> heap;
+
+    /**
+     * Collapse the merge of sorted sources.
+     *
+     * @param sources   sorted sources, in order of priority. Not null.
+     * @param comp      the order of the sources. Not null.
+     * @param combiner  combines two equal elements, the earlier one first.
+     *                  Not null.
+     */
+    CollapseSpliter(
+        final List<Stream<T>> sources,
+        final Comparator<? super T> comp,
+        final BinaryOperator<T> combiner)
+    {
+        super(Long.MAX_VALUE, Spliterator.ORDERED);
+        Objects.requireNonNull(sources);
+        Objects.requireNonNull(comp);
+        Objects.requireNonNull(combiner);
+        this.sources = sources;
+        this.comp = comp;
+        this.combiner = combiner;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super T> action) {
+        Objects.requireNonNull(action);
+        if (heap == null) {
+            heap = new MergeHeap<>(sources.stream()
+                .map(s -> PeekingIterator.of(s.iterator()))
+                .collect(Collectors.toList()), comp);
+        }
+        final boolean advanced = !heap.isEmpty();
+        if (advanced) {
+            final T first = heap.pop();
+            T item = first;
+            while (!heap.isEmpty() && comp.compare(heap.peek(), first) == 0) {
+                item = combiner.apply(item, heap.pop());
+            }
+            action.accept(item);
+        }
+        return advanced;
+    }
+}
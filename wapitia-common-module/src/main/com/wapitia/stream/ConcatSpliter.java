@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * {@code ConcatSpliter<T>} traverses a sequence of {@link Spliterator}s one
+ * after the other, as if they were a single source.
+ * Splitting hands off the leading pieces, or splits the one remaining piece,
+ * so the concatenation stays as splittable as its parts.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> Shared type of elements in the pieces
+ */
+class ConcatSpliter<T> implements Spliterator<T> {
+
+    private final Deque<Spliterator<T>> pieces;
+
+    /**
+     * Concatenate the pieces, in their order.
+     *
+     * @param pieces spliterators to traverse one after the other. Not null.
+     */
+    ConcatSpliter(final Deque<Spliterator<T>> pieces) {
+        Objects.requireNonNull(pieces);
+        this.pieces = pieces;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super T> action) {
+        Objects.requireNonNull(action);
+        boolean advanced = false;
+        while (!advanced && !pieces.isEmpty()) {
+            advanced = pieces.peekFirst().tryAdvance(action);
+            if (!advanced) {
+                pieces.pollFirst();
+            }
+        }
+        return advanced;
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super T> action) {
+        Objects.requireNonNull(action);
+        while (!pieces.isEmpty()) {
+            pieces.pollFirst().forEachRemaining(action);
+        }
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        final Spliterator<T> result;
+        if (pieces.size() > 1) {
+            final long half = estimateSize() >>> 1;
+            final Deque<Spliterator<T>> lead = new ArrayDeque<>();
+            long leadSize = 0L;
+            while (pieces.size() > 1 && (lead.isEmpty() || leadSize < half)) {
+                final Spliterator<T> piece = pieces.pollFirst();
+                leadSize += piece.estimateSize();
+                lead.addLast(piece);
+            }
+            result = new ConcatSpliter<>(lead);
+        } else if (pieces.size() == 1) {
+            result = pieces.peekFirst().trySplit();
+        } else {
+            result = null;
+        }
+        return result;
+    }
+
+    @Override
+    public long estimateSize() {
+        long result = 0L;
+        for (final Spliterator<T> piece : pieces) {
+            result += piece.estimateSize();
+            if (result < 0L) {
+                // overflow
+                result = Long.MAX_VALUE;
+                break;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int characteristics() {
+        int result = ORDERED | SIZED | SUBSIZED;
+        for (final Spliterator<T> piece : pieces) {
+            result &= piece.characteristics() | ~(SIZED | SUBSIZED);
+        }
+        return result;
+    }
+
+}
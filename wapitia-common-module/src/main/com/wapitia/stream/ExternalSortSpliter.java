@@ -0,0 +1,337 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@code ExternalSortSpliter<T>} sorts a source that may be larger than the
+ * heap. The source is read in chunks of about {@code memoryBudget}
+ * serialized bytes; each chunk is sorted and spilled to a temporary file as
+ * a sorted run. The runs, and the final chunk still in memory, are then
+ * merged lazily by a {@link FlatSpliter}, reading each run through a
+ * {@link FileChannel} a window of {@value #READ_BUFFER_BYTES} bytes at a
+ * time, or of the run's largest record when that is larger. No run is
+ * memory-mapped, so closing a run's channel lets go of the file at once.
+ *
+ * <p>Nothing is read until the first element is requested. When the whole
+ * source fits in one chunk, it is sorted in memory and nothing is spilled,
+ * and the output splits as a list does. The merge of spilled runs doesn't
+ * split. A run's channel is closed once the run is read to its end, and
+ * {@link #close()} closes the channels still open, then deletes the
+ * temporary files.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> type of the items sorted
+ */
+class ExternalSortSpliter<T> implements Spliterator<T>, AutoCloseable {
+
+    private static final int WRITE_BUFFER_BYTES = 1 << 16;
+
+    /**
+     * Bytes of a run read at a time, at least.
+     */
+    static final int READ_BUFFER_BYTES = 1 << 16;
+
+    private final Spliterator<T> source;
+    private final Comparator<? super T> comp;
+    private final RecordSerializer<T> serializer;
+    private final long chunkBytes;
+    private final Path tempDir;
+
+    private final List<Path> runs = new ArrayList<>();
+    private final List<RunReader> readers = new ArrayList<>();
+    private Spliterator<T> sorted = null;
+
+    /**
+     * Sort the source, once traversal begins.
+     *
+     * @param source        items to sort. Not null.
+     * @param comp          the sort order. Not null.
+     * @param serializer    writes and reads the items of spilled runs.
+     *                      Not null.
+     * @param memoryBudget  serialized bytes to hold in memory at once,
+     *                      positive
+     * @param tempDir       where the run files go, or {@code null} for the
+     *                      default temporary-file directory
+     */
+    ExternalSortSpliter(
+        final Spliterator<T> source,
+        final Comparator<? super T> comp,
+        final RecordSerializer<T> serializer,
+        final long memoryBudget,
+        final Path tempDir)
+    {
+        Objects.requireNonNull(source);
+        Objects.requireNonNull(comp);
+        Objects.requireNonNull(serializer);
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException(
+                "memoryBudget <= 0: " + memoryBudget);
+        }
+        this.source = source;
+        this.comp = comp;
+        this.serializer = serializer;
+        this.chunkBytes = memoryBudget;
+        this.tempDir = tempDir;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super T> action) {
+        return sorted().tryAdvance(action);
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super T> action) {
+        sorted().forEachRemaining(action);
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        final Spliterator<T> merged = sorted();
+        return runs.isEmpty() ? merged.trySplit() : null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return sorted != null ? sorted.estimateSize() : source.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | (source.characteristics() & SIZED);
+    }
+
+    /**
+     * Close the run files still being read, then delete them. The sorted
+     * output can't be read any further.
+     */
+    @Override
+    public void close() {
+        UncheckedIOException failure = null;
+        for (final RunReader reader : readers) {
+            try {
+                reader.close();
+            } catch (final IOException e) {
+                if (failure == null) {
+                    failure = new UncheckedIOException(e);
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        readers.clear();
+        for (final Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (final IOException e) {
+                if (failure == null) {
+                    failure = new UncheckedIOException(e);
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        runs.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * The sorted output, built from the source upon first use.
+     */
+    private Spliterator<T> sorted() {
+        if (sorted == null) {
+            final List<Stream<T>> merging = new ArrayList<>();
+            final List<T> chunk = new ArrayList<>();
+            final long[] bytes = {0L};
+            source.forEachRemaining(t -> {
+                final int size = serializer.sizeOf(t);
+                if (!chunk.isEmpty() && bytes[0] + size > chunkBytes) {
+                    merging.add(spill(chunk));
+                    chunk.clear();
+                    bytes[0] = 0L;
+                }
+                bytes[0] += size;
+                chunk.add(t);
+            });
+            chunk.sort(comp);
+            merging.add(chunk.stream());
+            sorted = merging.size() == 1
+                ? chunk.spliterator()
+                : new FlatSpliter<>(merging, comp);
+        }
+        return sorted;
+    }
+
+    /**
+     * Sort the chunk and write it to a new run file.
+     *
+     * @return a stream reading the run back
+     */
+    private Stream<T> spill(final List<T> chunk) {
+        chunk.sort(comp);
+        try {
+            final Path run = tempDir == null
+                ? Files.createTempFile("wapitia-sort-", ".run")
+                : Files.createTempFile(tempDir, "wapitia-sort-", ".run");
+            runs.add(run);
+            int maxRecord = 0;
+            try (FileChannel out = FileChannel.open(run,
+                StandardOpenOption.WRITE))
+            {
+                ByteBuffer buffer =
+                    ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+                for (final T item : chunk) {
+                    final int size = serializer.sizeOf(item);
+                    maxRecord = Math.max(maxRecord, size);
+                    if (size > buffer.remaining()) {
+                        flush(buffer, out);
+                        if (size > buffer.capacity()) {
+                            buffer = ByteBuffer.allocateDirect(size);
+                        }
+                    }
+                    serializer.write(item, buffer);
+                }
+                flush(buffer, out);
+            }
+            final RunReader reader =
+                new RunReader(run, chunk.size(), maxRecord);
+            readers.add(reader);
+            return StreamSupport.stream(Spliterators.spliterator(
+                reader, chunk.size(), ORDERED), false);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void flush(final ByteBuffer buffer, final FileChannel out)
+        throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Reads the items of a run file back through a channel, a window at a
+     * time. Records are self-delimiting but of unknown size until read, so
+     * the window is refilled whenever it holds less than the run's largest
+     * record, and is never smaller than that record.
+     */
+    private final class RunReader implements Iterator<T>, Closeable {
+
+        private final Path run;
+        private final FileChannel channel;
+        private final int maxRecord;
+        private final ByteBuffer window;
+        private long remaining;
+        private boolean eof = false;
+
+        RunReader(final Path run, final long count, final int maxRecord)
+            throws IOException
+        {
+            this.run = run;
+            this.channel = FileChannel.open(run, StandardOpenOption.READ);
+            this.maxRecord = maxRecord;
+            this.window = ByteBuffer.allocateDirect(
+                Math.max(READ_BUFFER_BYTES, maxRecord));
+            this.window.flip();
+            this.remaining = count;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0L;
+        }
+
+        @Override
+        public T next() {
+            if (remaining == 0L) {
+                throw new NoSuchElementException();
+            }
+            try {
+                if (!eof && window.remaining() < maxRecord) {
+                    refill();
+                }
+                final T result = serializer.read(window);
+                remaining--;
+                if (remaining == 0L) {
+                    close();
+                }
+                return result;
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void refill() throws IOException {
+            window.compact();
+            while (!eof && window.hasRemaining()) {
+                eof = channel.read(window) < 0;
+            }
+            window.flip();
+            if (eof && !window.hasRemaining()) {
+                throw new IOException(run + " ended with " + remaining
+                    + " records unread");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
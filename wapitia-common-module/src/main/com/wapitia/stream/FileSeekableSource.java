@@ -0,0 +1,225 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A {@link SeekableSource} over a file of fixed-width records sorted by a
+ * {@code long} key. Record {@code i} lies at byte {@code i * recordSize},
+ * so a seek is a binary search over record numbers, each probe reading
+ * a key with a positional read. Records are otherwise read
+ * {@value #BLOCK_BYTES} bytes at a time.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> Type of the elements made from the records
+ */
+final class FileSeekableSource<T> extends AbstractSeekableSource<T> {
+
+    /**
+     * Bytes read at a time, rounded down to whole records.
+     */
+    static final int BLOCK_BYTES = 1 << 16;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final FixedRecordLayout layout;
+    private final Function<? super ByteBuffer, ? extends T> decoder;
+    private final ToLongFunction<? super T> key;
+    private final int recordSize;
+    private final long count;
+
+    // records from blockStart on, blockCount of them
+    private final ByteBuffer block;
+    private long blockStart = 0L;
+    private int blockCount = 0;
+
+    private final ByteBuffer keyBuffer;
+
+    // the next record, and its element once decoded
+    private long index = 0L;
+    private T head = null;
+    private boolean decoded = false;
+
+    /**
+     * Open a file of records.
+     *
+     * @param file    file of whole records sorted by key. Not null.
+     * @param layout  the layout of the records. Not null.
+     * @param decoder makes an element from a record. Not null.
+     * @param key     the key of an element. Not null.
+     * @throws UncheckedIOException when the file can't be opened
+     */
+    FileSeekableSource(
+        final Path file,
+        final FixedRecordLayout layout,
+        final Function<? super ByteBuffer, ? extends T> decoder,
+        final ToLongFunction<? super T> key)
+    {
+        this.file = Objects.requireNonNull(file);
+        this.layout = Objects.requireNonNull(layout);
+        this.decoder = Objects.requireNonNull(decoder);
+        this.key = Objects.requireNonNull(key);
+        this.recordSize = layout.recordSize();
+        this.block = ByteBuffer.allocate(
+            Math.max(1, BLOCK_BYTES / recordSize) * recordSize)
+            .order(layout.order());
+        this.keyBuffer = ByteBuffer.allocate(Long.BYTES)
+            .order(layout.order());
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            final long fileSize = channel.size();
+            if (fileSize % recordSize != 0L) {
+                channel.close();
+                throw new IllegalArgumentException(file + " holds "
+                    + fileSize + " bytes, not whole records of "
+                    + recordSize);
+            }
+            this.count = fileSize / recordSize;
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    boolean hasNextSorted() {
+        return index < count;
+    }
+
+    @Override
+    T peekSorted() {
+        if (!hasNextSorted()) {
+            throw new NoSuchElementException();
+        }
+        if (!decoded) {
+            final int offset = blockOffset(index);
+            block.limit(offset + recordSize).position(offset);
+            head = decoder.apply(block);
+            block.limit(blockCount * recordSize);
+            decoded = true;
+        }
+        return head;
+    }
+
+    @Override
+    T nextSorted() {
+        final T result = peekSorted();
+        index++;
+        head = null;
+        decoded = false;
+        return result;
+    }
+
+    @Override
+    void seekSorted(final T target) {
+        final long k = key.applyAsLong(target);
+        long lo = 0L;
+        long hi = count;
+        while (lo < hi) {
+            final long mid = (lo + hi) >>> 1;
+            if (keyAt(mid) < k) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        index = lo;
+        head = null;
+        decoded = false;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The key of record {@code i}, from the block when it holds the record.
+     */
+    private long keyAt(final long i) {
+        final long result;
+        if (i >= blockStart && i < blockStart + blockCount) {
+            result = layout.key(block, (int) (i - blockStart) * recordSize);
+        } else {
+            keyBuffer.clear();
+            readFully(keyBuffer, i * recordSize + layout.keyOffset());
+            result = keyBuffer.getLong(0);
+        }
+        return result;
+    }
+
+    /**
+     * Where record {@code i} starts in the block, reading the block from
+     * record {@code i} on when it doesn't hold the record.
+     */
+    private int blockOffset(final long i) {
+        if (i < blockStart || i >= blockStart + blockCount) {
+            blockCount = (int) Math.min(
+                block.capacity() / recordSize, count - i);
+            blockStart = i;
+            block.clear().limit(blockCount * recordSize);
+            readFully(block, i * recordSize);
+        }
+        return (int) (i - blockStart) * recordSize;
+    }
+
+    private void readFully(final ByteBuffer buffer, final long position) {
+        try {
+            long at = position;
+            while (buffer.hasRemaining()) {
+                final int n = channel.read(buffer, at);
+                if (n < 0) {
+                    throw new EOFException(file + " ended at " + at);
+                }
+                at += n;
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
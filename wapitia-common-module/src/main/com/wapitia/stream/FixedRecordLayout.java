@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
+/**
+ * The shape of a binary file of fixed-width records sorted by a
+ * {@code long} key: the size of every record, where in a record its key
+ * lies, and the byte order of the key.
+ * Keys compare as signed {@code long}s.
+ *
+ * @author Corey Morgan
+ *
+ * @see Streams#mergeRecordFiles(java.util.List, FixedRecordLayout,
+ *      java.nio.channels.WritableByteChannel)
+ */
+public final class FixedRecordLayout {
+
+    private final int recordSize;
+    private final int keyOffset;
+    private final ByteOrder order;
+
+    /**
+     * Describe a record layout.
+     *
+     * @param recordSize bytes in a record, at least 8
+     * @param keyOffset  offset of the 8 byte key within a record
+     * @param order      byte order of the key. Not null.
+     */
+    public FixedRecordLayout(
+        final int recordSize,
+        final int keyOffset,
+        final ByteOrder order)
+    {
+        if (keyOffset < 0 || recordSize < keyOffset + Long.BYTES) {
+            throw new IllegalArgumentException("a key at " + keyOffset
+                + " doesn't fit records of " + recordSize + " bytes");
+        }
+        this.recordSize = recordSize;
+        this.keyOffset = keyOffset;
+        this.order = Objects.requireNonNull(order);
+    }
+
+    /**
+     * @return bytes in a record
+     */
+    public int recordSize() {
+        return recordSize;
+    }
+
+    /**
+     * @return offset of the key within a record
+     */
+    public int keyOffset() {
+        return keyOffset;
+    }
+
+    /**
+     * @return byte order of the key
+     */
+    public ByteOrder order() {
+        return order;
+    }
+
+    /**
+     * Read the key of the record at an absolute position of a buffer
+     * ordered as this layout is, without moving the buffer's position.
+     *
+     * @param buffer   buffer holding the record, in this layout's order
+     * @param position where the record starts
+     * @return the record's key
+     */
+    public long key(final ByteBuffer buffer, final int position) {
+        return buffer.getLong(position + keyOffset);
+    }
+}
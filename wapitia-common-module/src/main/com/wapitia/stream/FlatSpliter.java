@@ -32,14 +32,17 @@
 
 package com.wapitia.stream;
 
-import com.wapitia.collections.IteratorStack;
+import com.wapitia.collections.PeekingIterator;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
+import java.util.Spliterator;
 import java.util.Spliterators;
-import java.util.function.BinaryOperator;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -54,11 +57,28 @@ import java.util.stream.Stream;
  * correctly.
  * The generated stream continues until all streams are exhausted.
  *
+ * <p>The top elements of the streams are kept in a {@link MergeHeap}, so
+ * each output element costs {@code O(log k)} comparisons for {@code k}
+ * streams. Equal elements are produced in the order of their streams in the
+ * list.
+ *
+ * <p>When every input stream is SIZED and SUBSIZED, as streams over
+ * in-memory collections and arrays are, the merge can be split for parallel
+ * processing. A pivot is chosen from samples taken at the midpoint of each
+ * input, and every input is divided into its elements less than the pivot
+ * and the rest. Each half then merges only its own key range, so the
+ * parallel output is still in comparator order.
+ *
  * @author Corey Morgan
  *
  * @param <T> Shared type of elements in the input and output stream
  */
-class FlatSpliter<T> extends Spliterators.AbstractSpliterator<T> {
+class FlatSpliter<T> implements Spliterator<T> {
+
+    /**
+     * Merges smaller than this are not worth splitting.
+     */
+    static final long MIN_SPLIT_SIZE = 1L << 10;
 
     /**
      * Takes a {@link List} of similar-typed {@link Stream}s and provides
@@ -69,9 +89,9 @@ class FlatSpliter<T> extends Spliterators.AbstractSpliterator<T> {
      * <p>Incomparable streams will yield predictable but hard to
      * anticipate results.
      *
-     * <p>This wraps the incoming streams into {@link IteratorStack}s in order
-     * to "peek" at the top elements of these streams for comparison purposes
-     * without yet consuming them.
+     * <p>This wraps the incoming streams into {@link PeekingIterator}s in
+     * order to "peek" at the top elements of these streams for comparison
+     * purposes without yet consuming them.
      *
      * @param streamList list of similar streams to traverse. Not null.
      * @param comp      compares two stream items, the "least" of which will
@@ -81,54 +101,67 @@ class FlatSpliter<T> extends Spliterators.AbstractSpliterator<T> {
         final List<Stream<T>> streamList,
         final Comparator<? super T> comp)
     {
-        super(Long.MAX_VALUE, 0);
-        Objects.requireNonNull(streamList);
-        Objects.requireNonNull(comp);
-        this.istackList = streamList.stream()
-                .map(Stream::iterator)
-                .map(IteratorStack<T>::new)
-                .collect(Collectors.toList());
+        this(comp, streamList.stream()
+                .map(Stream::spliterator)
+                .collect(Collectors.toList()));
+    }
 
+    /**
+     * Merge the sources, which remain untouched until the first advance
+     * or split.
+     *
+     * @param comp      compares two source items. Not null.
+     * @param sources   sorted sources, in priority order. Not null.
+     */
+    private FlatSpliter(
+        final Comparator<? super T> comp,
+        final List<Spliterator<T>> sources)
+    {
+        Objects.requireNonNull(comp);
+        Objects.requireNonNull(sources);
         this.comp = comp;
+        this.sources = sources;
+        this.sizes = sources.stream()
+                .mapToInt(Spliterator::characteristics)
+                .reduce(SIZED | SUBSIZED, (a, b) -> a & b);
     }
 
-    private final List<IteratorStack<T>> istackList;
+    // the untraversed inputs, until the heap is built from them
+    private List<Spliterator<T>> sources;
+
+    // SIZED and SUBSIZED, if all sources share those characteristics
+    private final int sizes;
+
+    // exact number of elements left, once the heap is built from SIZED
+    // sources
+    private long remaining = Long.MAX_VALUE;
 
     // compares two stream items, return negative if first should go first,
     // positive otherwise
     final Comparator<? super T> comp;
 
+    // built on the first advance, so no stream is read before then
+    private MergeHeap<T> heap = null;
+
     final Comparator<? super T> comp() {
         return this.comp;
     }
 
     /**
-     * Compare the top elements of two stacks, according to the
-     * {@link Comparator} of this {@link FlatSpliter#FlatSpliter FlatSpliter}
-     * object.
-     *
-     * <p>When stack items {@code t1} and {@code t2} are compared,
-     * this returns {@code t1} iff {@code t1 <= t2}.
-     * If  {@code t1} is empty, this returns  {@code t2}  and vice versa.
-     * Will return an {@link IteratorStack#empty() empty}
-     * stack when both stacks are exhausted.
-     * @see IteratorStack#empty()
-     * @see Comparator
-     * @see IteratorStack#peek()
+     * The heap of stream tops, built upon first use.
      */
-    BinaryOperator<IteratorStack<T>> stackHavingBestTop = (ts1,ts2) -> {
-        final IteratorStack<T> result;
-        if (ts1.empty()) {
-            result = ts2;
-        } else if (ts2.empty()) {
-            result = ts1;
-        } else {
-            final int cmp = comp().compare(ts1.peek(), ts2.peek());
-            result = (cmp <= 0) ? ts1 : ts2;
+    final MergeHeap<T> heap() {
+        if (heap == null) {
+            remaining = estimateSize();
+            heap = new MergeHeap<>(sources.stream()
+                    .map(Spliterators::iterator)
+                    .map(PeekingIterator::of)
+                    .collect(Collectors.toList()),
+                comp());
+            sources = null;
         }
-        return result;
-    };
-
+        return heap;
+    }
 
     /**
      * Advance until all streams are exhausted.
@@ -138,24 +171,288 @@ class FlatSpliter<T> extends Spliterators.AbstractSpliterator<T> {
      */
     @Override
     public boolean tryAdvance(final Consumer<? super T> action) {
-        boolean itsOver = false;
-        boolean advanced = false;
-        while (!advanced && !itsOver) {
-            Optional<IteratorStack<T>> stackOpt =
-                    istackList.stream().parallel().reduce(stackHavingBestTop);
-
-            if (stackOpt.isPresent()) {
-                Objects.requireNonNull(action);
-                T thing = stackOpt.get().pop();
-                action.accept(thing);
-                advanced = true;
-            } else {
-                // when there are no stacks returned, we've reached
-                // the end of all data
-                itsOver = true;
+        Objects.requireNonNull(action);
+        final MergeHeap<T> tops = heap();
+        final boolean advanced = !tops.isEmpty();
+        if (advanced) {
+            action.accept(tops.pop());
+            if ((sizes & SIZED) != 0) {
+                remaining--;
             }
         }
         return advanced;
     }
 
+    /**
+     * Drain all streams, a run at a time.
+     * While one stream keeps winning, its elements are passed along after a
+     * single comparison each with the runner-up stream's top, so long runs
+     * from one stream cost about one comparison per element.
+     *
+     * @see MergeHeap#popRun(Consumer)
+     */
+    @Override
+    public void forEachRemaining(final Consumer<? super T> action) {
+        Objects.requireNonNull(action);
+        final MergeHeap<T> tops = heap();
+        while (!tops.isEmpty()) {
+            final long run = tops.popRun(action);
+            if ((sizes & SIZED) != 0) {
+                remaining -= run;
+            }
+        }
+    }
+
+    /**
+     * Split off the lower key range of the merge, when all sources are
+     * SIZED and SUBSIZED, traversal hasn't begun, and there are enough
+     * elements to make it worthwhile.
+     *
+     * <p>Each source is sampled at its midpoint, and the size-weighted
+     * median of the samples is the pivot. All elements less than the pivot
+     * go to the returned spliterator, and the rest stay here.
+     *
+     * <p>Only sources that split near their middle are split this way.
+     * A source that is SIZED but won't split, such as a sequential
+     * {@code list.stream().map(f)}, or that splits off a small batch at a
+     * time, such as one over an iterator, would have to be read all the
+     * way to the pivot. So when a source of more than
+     * {@value #MIN_SPLIT_SIZE} elements splits that way, at the top or
+     * further down, the merge doesn't split.
+     *
+     * @return the merge of the elements below the pivot, or {@code null}
+     */
+    @Override
+    public Spliterator<T> trySplit() {
+        if (heap != null
+            || (sizes & SUBSIZED) == 0
+            || estimateSize() < MIN_SPLIT_SIZE)
+        {
+            return null;
+        }
+
+        final Holder<T> pivotHolder = new Holder<>();
+        if (!samplePivot(pivotHolder)) {
+            return null;
+        }
+        final T pivot = pivotHolder.value;
+        final List<Spliterator<T>> lower = new ArrayList<>(sources.size());
+        final List<Spliterator<T>> upper = new ArrayList<>(sources.size());
+        long lowerSize = 0L;
+        long upperSize = 0L;
+        boolean partitioned = true;
+        for (final Spliterator<T> source : sources) {
+            final Deque<Spliterator<T>> below = new ArrayDeque<>();
+            final Deque<Spliterator<T>> above = new ArrayDeque<>();
+            if (partitioned) {
+                partitioned = partition(source, pivot, below, above);
+            } else {
+                above.add(source);
+            }
+            final Spliterator<T> lo = new ConcatSpliter<>(below);
+            final Spliterator<T> hi = new ConcatSpliter<>(above);
+            lowerSize += lo.estimateSize();
+            upperSize += hi.estimateSize();
+            lower.add(lo);
+            upper.add(hi);
+        }
+
+        final Spliterator<T> result;
+        if (lowerSize == 0L || upperSize == 0L || !partitioned) {
+            // a degenerate pivot, or a source that won't split, so put the
+            // pieces back together
+            final List<Spliterator<T>> whole = new ArrayList<>(sources.size());
+            for (int i = 0; i < sources.size(); i++) {
+                if (lowerSize == 0L) {
+                    whole.add(upper.get(i));
+                } else if (upperSize == 0L) {
+                    whole.add(lower.get(i));
+                } else {
+                    final Deque<Spliterator<T>> both = new ArrayDeque<>(2);
+                    both.add(lower.get(i));
+                    both.add(upper.get(i));
+                    whole.add(new ConcatSpliter<>(both));
+                }
+            }
+            this.sources = whole;
+            result = null;
+        } else {
+            this.sources = upper;
+            result = new FlatSpliter<>(comp(), lower);
+        }
+        return result;
+    }
+
+    /**
+     * Take one element from the midpoint of each source, and pick the
+     * size-weighted median of them into {@code pivot}. The sampled elements
+     * are pushed back onto their sources.
+     *
+     * @return false, with no pivot picked, when a source doesn't split
+     *         near its middle
+     */
+    private boolean samplePivot(final Holder<T> pivot) {
+        final List<T> samples = new ArrayList<>(sources.size());
+        final List<Long> weights = new ArrayList<>(sources.size());
+        final Holder<T> holder = new Holder<>();
+        boolean even = true;
+        for (int i = 0; i < sources.size() && even; i++) {
+            final Spliterator<T> source = sources.get(i);
+            final long weight = source.estimateSize();
+            final Deque<Spliterator<T>> pieces = new ArrayDeque<>(3);
+            final Spliterator<T> lead = source.trySplit();
+            even = splitsEvenly(weight, lead);
+            if (lead != null) {
+                pieces.add(lead);
+            }
+            if (source.tryAdvance(holder)) {
+                samples.add(holder.value);
+                weights.add(weight);
+                pieces.add(single(holder.value));
+            }
+            pieces.add(source);
+            sources.set(i, new ConcatSpliter<>(pieces));
+        }
+        if (!even || samples.isEmpty()) {
+            return false;
+        }
+
+        final List<Integer> byValue = new ArrayList<>(samples.size());
+        for (int i = 0; i < samples.size(); i++) {
+            byValue.add(i);
+        }
+        byValue.sort((a, b) -> comp().compare(samples.get(a), samples.get(b)));
+        long total = 0L;
+        for (final long w : weights) {
+            total += w;
+        }
+        long seen = 0L;
+        int median = byValue.get(byValue.size() - 1);
+        for (final int i : byValue) {
+            seen += weights.get(i);
+            if (seen >= total >>> 1) {
+                median = i;
+                break;
+            }
+        }
+        pivot.value = samples.get(median);
+        return true;
+    }
+
+    /**
+     * Did a source of {@code size} elements split near its middle, or is it
+     * too small to matter?
+     */
+    private static boolean splitsEvenly(
+        final long size,
+        final Spliterator<?> lead)
+    {
+        return size <= MIN_SPLIT_SIZE
+            || lead != null && lead.estimateSize() >= size >>> 2;
+    }
+
+    /**
+     * Divide a sorted source into its elements less than {@code pivot},
+     * appended in order to {@code below}, and the rest, appended in order to
+     * {@code above}. The source is narrowed down by repeated splitting, so
+     * only the elements next to the pivot are read, as long as every piece
+     * of more than {@value #MIN_SPLIT_SIZE} elements splits near its middle.
+     * When one doesn't, the narrowing stops there, that piece going to
+     * {@code above} unread, so that {@code below} and {@code above} still
+     * hold the whole source in order, and the partition fails.
+     *
+     * @return true when the source is partitioned around {@code pivot}
+     */
+    private boolean partition(
+        final Spliterator<T> source,
+        final T pivot,
+        final Deque<Spliterator<T>> below,
+        final Deque<Spliterator<T>> above)
+    {
+        final Deque<Spliterator<T>> aboveReversed = new ArrayDeque<>();
+        final Holder<T> holder = new Holder<>();
+        Spliterator<T> cur = source;
+        boolean narrowing = true;
+        boolean result = true;
+        while (narrowing) {
+            final long size = cur.estimateSize();
+            final Spliterator<T> lead = cur.trySplit();
+            if (!splitsEvenly(size, lead)) {
+                aboveReversed.addFirst(cur);
+                if (lead != null) {
+                    aboveReversed.addFirst(lead);
+                }
+                narrowing = false;
+                result = false;
+            } else if (lead == null) {
+                // no more splitting, so walk up to the pivot
+                final List<T> less = new ArrayList<>();
+                boolean crossed = false;
+                while (!crossed && cur.tryAdvance(holder)) {
+                    crossed = comp().compare(holder.value, pivot) >= 0;
+                    if (!crossed) {
+                        less.add(holder.value);
+                    }
+                }
+                below.addLast(less.spliterator());
+                if (crossed) {
+                    aboveReversed.addFirst(cur);
+                    aboveReversed.addFirst(single(holder.value));
+                }
+                narrowing = false;
+            } else if (!cur.tryAdvance(holder)) {
+                cur = lead;
+            } else if (comp().compare(holder.value, pivot) < 0) {
+                below.addLast(lead);
+                below.addLast(single(holder.value));
+            } else {
+                aboveReversed.addFirst(cur);
+                aboveReversed.addFirst(single(holder.value));
+                cur = lead;
+            }
+        }
+        above.addAll(aboveReversed);
+        return result;
+    }
+
+    private static <T> Spliterator<T> single(final T value) {
+        return Collections.singletonList(value).spliterator();
+    }
+
+    @Override
+    public long estimateSize() {
+        long result;
+        if (heap != null) {
+            result = remaining;
+        } else {
+            result = 0L;
+            for (final Spliterator<T> source : sources) {
+                result += source.estimateSize();
+                if (result < 0L) {
+                    // overflow
+                    result = Long.MAX_VALUE;
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | sizes;
+    }
+
+    /**
+     * Holds the latest element given to it.
+     */
+    private static final class Holder<T> implements Consumer<T> {
+        T value;
+
+        @Override
+        public void accept(final T t) {
+            this.value = t;
+        }
+    }
+
 }
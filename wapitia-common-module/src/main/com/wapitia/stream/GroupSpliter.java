@@ -0,0 +1,219 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import com.wapitia.collections.PeekingIterator;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * {@code GroupSpliter<T, K, R>} folds each run of adjacent elements sharing
+ * a key into a single result, passing along the key and result as soon as
+ * the key changes.
+ *
+ * <p>Fed a stream sorted by key, this groups the whole stream while holding
+ * at most one group at a time, rather than every group until the end as
+ * {@link java.util.stream.Collectors#groupingBy(Function)} does. Keys are
+ * compared with {@link Object#equals(Object)}; a key recurring later in the
+ * stream starts a new group.
+ *
+ * <p>The nested classes give the fold: {@link Collecting} through a
+ * {@link Collector}, and {@link Reducing} through a mapping and a binary
+ * operator, which holds just the running result of the group.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> type of the source elements
+ * @param <K> type of the group keys
+ * @param <R> type of the group results
+ */
+abstract class GroupSpliter<T, K, R>
+    extends Spliterators.AbstractSpliterator<Map.Entry<K, R>>
+{
+
+    private final PeekingIterator<T> source;
+    private final Function<? super T, ? extends K> keyFn;
+
+    // the key of the source's next element, once computed
+    private K nextKey;
+    private boolean keyed = false;
+
+    /**
+     * Group a source by key.
+     *
+     * @param source    the source elements. Not null.
+     * @param keyFn     the key of an element. Not null.
+     */
+    protected GroupSpliter(
+        final PeekingIterator<T> source,
+        final Function<? super T, ? extends K> keyFn)
+    {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        Objects.requireNonNull(source);
+        Objects.requireNonNull(keyFn);
+        this.source = source;
+        this.keyFn = keyFn;
+    }
+
+    /** Begin a group with its first element. */
+    protected abstract void start(T item);
+
+    /** Add another element to the group. */
+    protected abstract void add(T item);
+
+    /** The result of the group, clearing it for the next. */
+    protected abstract R finish();
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super Map.Entry<K, R>> action)
+    {
+        Objects.requireNonNull(action);
+        final boolean advanced = source.hasNext();
+        if (advanced) {
+            final K key = keyed ? nextKey : keyFn.apply(source.peek());
+            keyed = false;
+            start(source.next());
+            while (!keyed && source.hasNext()) {
+                final K k = keyFn.apply(source.peek());
+                if (Objects.equals(k, key)) {
+                    add(source.next());
+                } else {
+                    nextKey = k;
+                    keyed = true;
+                }
+            }
+            action.accept(new AbstractMap.SimpleImmutableEntry<>(
+                key, finish()));
+        }
+        return advanced;
+    }
+
+    /**
+     * Groups folded by a {@link Collector}.
+     *
+     * @param <T> type of the source elements
+     * @param <K> type of the group keys
+     * @param <A> mutable accumulation type of the collector
+     * @param <R> type of the group results
+     */
+    static final class Collecting<T, K, A, R> extends GroupSpliter<T, K, R> {
+
+        private final Supplier<A> supplier;
+        private final BiConsumer<A, ? super T> accumulator;
+        private final Function<A, R> finisher;
+        private A container;
+
+        Collecting(
+            final PeekingIterator<T> source,
+            final Function<? super T, ? extends K> keyFn,
+            final Collector<? super T, A, R> downstream)
+        {
+            super(source, keyFn);
+            this.supplier = downstream.supplier();
+            this.accumulator = downstream.accumulator();
+            this.finisher = downstream.finisher();
+        }
+
+        @Override
+        protected void start(final T item) {
+            container = supplier.get();
+            accumulator.accept(container, item);
+        }
+
+        @Override
+        protected void add(final T item) {
+            accumulator.accept(container, item);
+        }
+
+        @Override
+        protected R finish() {
+            final R result = finisher.apply(container);
+            container = null;
+            return result;
+        }
+    }
+
+    /**
+     * Groups folded by mapping each element and reducing the mapped values.
+     *
+     * @param <T> type of the source elements
+     * @param <K> type of the group keys
+     * @param <R> type of the group results
+     */
+    static final class Reducing<T, K, R> extends GroupSpliter<T, K, R> {
+
+        private final Function<? super T, ? extends R> mapper;
+        private final BinaryOperator<R> op;
+        private R value;
+
+        Reducing(
+            final PeekingIterator<T> source,
+            final Function<? super T, ? extends K> keyFn,
+            final Function<? super T, ? extends R> mapper,
+            final BinaryOperator<R> op)
+        {
+            super(source, keyFn);
+            Objects.requireNonNull(mapper);
+            Objects.requireNonNull(op);
+            this.mapper = mapper;
+            this.op = op;
+        }
+
+        @Override
+        protected void start(final T item) {
+            value = mapper.apply(item);
+        }
+
+        @Override
+        protected void add(final T item) {
+            value = op.apply(value, mapper.apply(item));
+        }
+
+        @Override
+        protected R finish() {
+            final R result = value;
+            value = null;
+            return result;
+        }
+    }
+}
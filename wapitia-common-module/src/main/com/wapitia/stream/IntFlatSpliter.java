@@ -0,0 +1,236 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * {@code IntFlatSpliter} is the {@code int} counterpart of
+ * {@link FlatSpliter}, merging a list of SORTED {@link IntStream}s into a
+ * single stream.
+ *
+ * <p>The top element of each stream is held in an {@code int} array next to
+ * a binary heap of the streams, so nothing is boxed or allocated per element.
+ * Equal elements are produced in the order of their streams in the list.
+ *
+ * @author Corey Morgan
+ */
+class IntFlatSpliter extends Spliterators.AbstractIntSpliterator {
+
+    /**
+     * Takes a {@link List} of {@link IntStream}s and provides a flattened
+     * output of their elements, least first according to {@code comp}.
+     *
+     * @param streamList list of sorted streams to traverse. Not null.
+     * @param comp      compares two stream elements, as
+     *                  {@link Integer#compare(int, int)} does for natural
+     *                  order. Not null.
+     */
+    public IntFlatSpliter(
+        final List<IntStream> streamList,
+        final IntBinaryOperator comp)
+    {
+        super(Long.MAX_VALUE, Spliterator.ORDERED);
+        Objects.requireNonNull(streamList);
+        Objects.requireNonNull(comp);
+        this.comp = comp;
+        this.heap = streamList.stream()
+                .map(IntStream::spliterator)
+                .toArray(Spliterator.OfInt[]::new);
+        this.head = new int[heap.length];
+        this.rank = new int[heap.length];
+    }
+
+    private final IntBinaryOperator comp;
+
+    // heap-ordered sources, the best top element is at index 0
+    private final Spliterator.OfInt[] heap;
+
+    // top element of each source in heap
+    private final int[] head;
+
+    // original list position of each source in heap, the tie breaker
+    private final int[] rank;
+
+    private int size = 0;
+
+    private boolean started = false;
+
+    // receives each element fetched from a source
+    private final Fetch fetch = new Fetch();
+
+    @Override
+    public boolean tryAdvance(final IntConsumer action) {
+        Objects.requireNonNull(action);
+        start();
+        final boolean advanced = size > 0;
+        if (advanced) {
+            action.accept(head[0]);
+            refillTop();
+        }
+        return advanced;
+    }
+
+    /**
+     * Drain all streams, a run at a time, passing along the winning stream's
+     * elements while they go before the runner-up stream's top.
+     */
+    @Override
+    public void forEachRemaining(final IntConsumer action) {
+        Objects.requireNonNull(action);
+        start();
+        while (size > 1) {
+            final int runnerUp = (size == 2 || before(1, 2)) ? 1 : 2;
+            final int bound = head[runnerUp];
+            final int boundRank = rank[runnerUp];
+            final Spliterator.OfInt top = heap[0];
+            boolean running = true;
+            while (running) {
+                action.accept(head[0]);
+                if (top.tryAdvance(fetch)) {
+                    head[0] = fetch.value;
+                    final int cmp = comp.applyAsInt(head[0], bound);
+                    running = cmp < 0 || (cmp == 0 && rank[0] < boundRank);
+                } else {
+                    removeTop();
+                    running = false;
+                }
+            }
+            siftDown(0);
+        }
+        if (size == 1) {
+            action.accept(head[0]);
+            heap[0].forEachRemaining(action);
+            removeTop();
+        }
+    }
+
+    /**
+     * Fetch the top of every stream and heap them, upon first use.
+     */
+    private void start() {
+        if (!started) {
+            started = true;
+            final Spliterator.OfInt[] sources = heap.clone();
+            for (int r = 0; r < sources.length; r++) {
+                heap[r] = null;
+                if (sources[r].tryAdvance(fetch)) {
+                    heap[size] = sources[r];
+                    head[size] = fetch.value;
+                    rank[size] = r;
+                    size++;
+                }
+            }
+            for (int i = (size >>> 1) - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+        }
+    }
+
+    /**
+     * Replace the top element just consumed with the next one from its
+     * stream, or drop the stream if it is exhausted.
+     */
+    private void refillTop() {
+        if (heap[0].tryAdvance(fetch)) {
+            head[0] = fetch.value;
+        } else {
+            removeTop();
+        }
+        siftDown(0);
+    }
+
+    private void removeTop() {
+        size--;
+        heap[0] = heap[size];
+        head[0] = head[size];
+        rank[0] = rank[size];
+        heap[size] = null;
+    }
+
+    /**
+     * Does the source at heap index {@code i} go before the one at {@code j}?
+     */
+    private boolean before(final int i, final int j) {
+        final int cmp = comp.applyAsInt(head[i], head[j]);
+        return cmp < 0 || (cmp == 0 && rank[i] < rank[j]);
+    }
+
+    private void siftDown(final int from) {
+        int i = from;
+        final int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            final int right = child + 1;
+            if (right < size && before(right, child)) {
+                child = right;
+            }
+            if (!before(child, i)) {
+                break;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(final int i, final int j) {
+        final Spliterator.OfInt s = heap[i];
+        heap[i] = heap[j];
+        heap[j] = s;
+        final int h = head[i];
+        head[i] = head[j];
+        head[j] = h;
+        final int r = rank[i];
+        rank[i] = rank[j];
+        rank[j] = r;
+    }
+
+    /**
+     * Holds the latest element fetched from a source.
+     */
+    private static final class Fetch implements IntConsumer {
+        int value;
+
+        @Override
+        public void accept(final int t) {
+            this.value = t;
+        }
+    }
+
+}
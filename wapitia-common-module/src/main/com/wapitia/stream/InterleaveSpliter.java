@@ -0,0 +1,145 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * {@code InterleaveSpliter<T>} takes turns among its sources, passing along
+ * up to a given number of elements from each source before moving on to
+ * the next, without comparing any elements.
+ *
+ * <p>Each element costs {@code O(1)}: a turn is an index into the live
+ * sources, and an exhausted source is dropped from the rotation, the
+ * others keeping their order.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> Shared type of elements of the sources
+ */
+class InterleaveSpliter<T> implements Spliterator<T> {
+
+    private final Spliterator<T>[] sources;
+    private final int[] weights;
+    private int live;
+    private int turn = 0;
+    private int taken = 0;
+
+    /**
+     * Interleave sources.
+     *
+     * @param sources the sources, in turn order. Not null.
+     * @param weights elements to take from each source per turn, each at
+     *                least 1. Not null, as long as {@code sources}.
+     */
+    @SuppressWarnings("unchecked")
+    InterleaveSpliter(final List<Spliterator<T>> sources, final int[] weights)
+    {
+        Objects.requireNonNull(sources);
+        Objects.requireNonNull(weights);
+        if (weights.length != sources.size()) {
+            throw new IllegalArgumentException(weights.length
+                + " weights for " + sources.size() + " sources");
+        }
+        for (final int weight : weights) {
+            if (weight < 1) {
+                throw new IllegalArgumentException("weight < 1: " + weight);
+            }
+        }
+        this.sources = (Spliterator<T>[])
+            sources.toArray(new Spliterator<?>[sources.size()]);
+        this.weights = weights.clone();
+        this.live = this.sources.length;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super T> action) {
+        Objects.requireNonNull(action);
+        boolean advanced = false;
+        while (!advanced && live > 0) {
+            advanced = sources[turn].tryAdvance(action);
+            if (!advanced) {
+                drop(turn);
+            } else if (++taken == weights[turn]) {
+                taken = 0;
+                turn = turn + 1 == live ? 0 : turn + 1;
+            }
+        }
+        return advanced;
+    }
+
+    /**
+     * Take an exhausted source out of the rotation.
+     */
+    private void drop(final int index) {
+        live--;
+        System.arraycopy(sources, index + 1, sources, index, live - index);
+        System.arraycopy(weights, index + 1, weights, index, live - index);
+        sources[live] = null;
+        taken = 0;
+        if (turn == live) {
+            turn = 0;
+        }
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        long result = 0L;
+        for (int i = 0; i < live; i++) {
+            result += sources[i].estimateSize();
+            if (result < 0L) {
+                // overflow
+                result = Long.MAX_VALUE;
+                break;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int characteristics() {
+        int sized = SIZED;
+        for (int i = 0; i < live; i++) {
+            sized &= sources[i].characteristics();
+        }
+        return ORDERED | sized;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import com.wapitia.collections.PeekingIterator;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@code KeyedFlatSpliter<T>} merges sorted sources as {@link FlatSpliter}
+ * does, ordering them by a key of their elements held in a
+ * {@link KeyedMergeHeap}, so that each element's key is taken once.
+ *
+ * <p>The sources are not read until the first advance.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> Shared type of elements in the input and output stream
+ */
+class KeyedFlatSpliter<T> extends Spliterators.AbstractSpliterator<T> {
+
+    private final List<Stream<T>> sources;
+    private final Function<List<PeekingIterator<T>>, KeyedMergeHeap<T>>
+        heapOf;
+    private KeyedMergeHeap<T> heap;
+
+    /**
+     * Merge sorted sources.
+     *
+     * @param sources sorted sources, in priority order. Not null.
+     * @param heapOf  builds the heap of the sources. Not null.
+     */
+    KeyedFlatSpliter(
+        final List<Stream<T>> sources,
+        final Function<List<PeekingIterator<T>>, KeyedMergeHeap<T>> heapOf)
+    {
+        super(Long.MAX_VALUE, Spliterator.ORDERED);
+        this.sources = Objects.requireNonNull(sources);
+        this.heapOf = Objects.requireNonNull(heapOf);
+    }
+
+    private KeyedMergeHeap<T> heap() {
+        if (heap == null) {
+            heap = heapOf.apply(sources.stream()
+                .map(s -> PeekingIterator.of(s.iterator()))
+                .collect(Collectors.toList()));
+        }
+        return heap;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super T> action) {
+        Objects.requireNonNull(action);
+        final KeyedMergeHeap<T> tops = heap();
+        final boolean advanced = !tops.isEmpty();
+        if (advanced) {
+            action.accept(tops.pop());
+        }
+        return advanced;
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super T> action) {
+        Objects.requireNonNull(action);
+        final KeyedMergeHeap<T> tops = heap();
+        while (!tops.isEmpty()) {
+            action.accept(tops.pop());
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import com.wapitia.collections.PeekingIterator;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A binary min-heap of {@link PeekingIterator} sources ordered by a key of
+ * their top elements, as {@link MergeHeap} is ordered by a comparator,
+ * but taking each key once, when its element comes to the top of its
+ * source, and keeping it next to the source.
+ *
+ * <p>A comparator such as {@code comparing(t -> t.date)} is called
+ * {@code O(log k)} times for each element of a {@code k}-way merge, each
+ * call reading the fields of both elements again. Here each element's key
+ * is read once, and the heap compares the keys it holds: two
+ * {@code long}s for {@link OfLong}, two {@link Comparable}s for
+ * {@link OfComparable}. Taking the key is the cost of this, so it only
+ * wins where the comparisons it saves, about {@code log2 k} per element,
+ * cost more than a key; with few sources it may not.
+ *
+ * <p>Ties between equal keys go to the source that came first in the
+ * original list. Not thread safe; a heap belongs to a single traversal.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> Shared type of elements in the sources
+ */
+abstract class KeyedMergeHeap<T> {
+
+    // heap-ordered sources, the least key is at index 0
+    final PeekingIterator<T>[] heap;
+
+    // original list position of each source in heap, the tie breaker
+    final int[] rank;
+
+    int size = 0;
+
+    /**
+     * Take the non-empty sources in the list, leaving the subclass to
+     * take their keys and {@link #heapify()}.
+     */
+    @SuppressWarnings("unchecked")
+    KeyedMergeHeap(final List<PeekingIterator<T>> sources) {
+        Objects.requireNonNull(sources);
+        this.heap =
+            (PeekingIterator<T>[]) new PeekingIterator<?>[sources.size()];
+        this.rank = new int[sources.size()];
+        int r = 0;
+        for (final PeekingIterator<T> source : sources) {
+            if (source.hasNext()) {
+                heap[size] = source;
+                rank[size] = r;
+                size++;
+            }
+            r++;
+        }
+    }
+
+    /**
+     * Take the key of the top element of the source at heap index
+     * {@code i}.
+     */
+    abstract void load(int i);
+
+    /**
+     * Compare the keys at heap indexes {@code i} and {@code j}, ignoring
+     * rank.
+     */
+    abstract int compareKeys(int i, int j);
+
+    /**
+     * Move the key at heap index {@code from} to {@code to}, clearing it at
+     * {@code from}.
+     */
+    abstract void moveKey(int from, int to);
+
+    abstract void swapKeys(int i, int j);
+
+    /**
+     * Load every key, then put the heap in order.
+     */
+    final void heapify() {
+        for (int i = 0; i < size; i++) {
+            load(i);
+        }
+        for (int i = (size >>> 1) - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * Are all sources exhausted?
+     *
+     * @return true when there are no more elements in any source
+     */
+    final boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Consume the least top element among all sources, then restore the
+     * heap, dropping that element's source if it is now exhausted.
+     * Do not call on an {@link #isEmpty() empty} heap.
+     *
+     * @return the next element of the merge
+     */
+    final T pop() {
+        final PeekingIterator<T> top = heap[0];
+        final T result = top.next();
+        if (top.hasNext()) {
+            load(0);
+        } else {
+            size--;
+            heap[0] = heap[size];
+            rank[0] = rank[size];
+            moveKey(size, 0);
+            heap[size] = null;
+        }
+        if (size > 1) {
+            siftDown(0);
+        }
+        return result;
+    }
+
+    private boolean before(final int i, final int j) {
+        final int cmp = compareKeys(i, j);
+        return cmp < 0 || (cmp == 0 && rank[i] < rank[j]);
+    }
+
+    private void siftDown(final int from) {
+        int i = from;
+        final int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            final int right = child + 1;
+            if (right < size && before(right, child)) {
+                child = right;
+            }
+            if (!before(child, i)) {
+                break;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(final int i, final int j) {
+        final PeekingIterator<T> s = heap[i];
+        heap[i] = heap[j];
+        heap[j] = s;
+        final int r = rank[i];
+        rank[i] = rank[j];
+        rank[j] = r;
+        swapKeys(i, j);
+    }
+
+    /**
+     * Sources ordered by a {@code long} key of their top elements.
+     *
+     * @param <T> Shared type of elements in the sources
+     */
+    static final class OfLong<T> extends KeyedMergeHeap<T> {
+
+        private final ToLongFunction<? super T> keyFn;
+        private final long[] keys;
+
+        /**
+         * Build a heap from the non-empty sources in the list.
+         *
+         * @param sources sorted sources to merge. Not null.
+         * @param keyFn   the key the sources are sorted by. Not null.
+         */
+        OfLong(
+            final List<PeekingIterator<T>> sources,
+            final ToLongFunction<? super T> keyFn)
+        {
+            super(sources);
+            this.keyFn = Objects.requireNonNull(keyFn);
+            this.keys = new long[heap.length];
+            heapify();
+        }
+
+        @Override
+        void load(final int i) {
+            keys[i] = keyFn.applyAsLong(heap[i].peek());
+        }
+
+        @Override
+        int compareKeys(final int i, final int j) {
+            return Long.compare(keys[i], keys[j]);
+        }
+
+        @Override
+        void moveKey(final int from, final int to) {
+            keys[to] = keys[from];
+        }
+
+        @Override
+        void swapKeys(final int i, final int j) {
+            final long k = keys[i];
+            keys[i] = keys[j];
+            keys[j] = k;
+        }
+    }
+
+    /**
+     * Sources ordered by a {@link Comparable} key of their top elements.
+     *
+     * @param <T> Shared type of elements in the sources
+     * @param <K> Type of the key
+     */
+    static final class OfComparable<T, K extends Comparable<? super K>>
+        extends KeyedMergeHeap<T>
+    {
+        private final Function<? super T, ? extends K> keyFn;
+        private final Object[] keys;
+
+        /**
+         * Build a heap from the non-empty sources in the list.
+         *
+         * @param sources sorted sources to merge. Not null.
+         * @param keyFn   the key the sources are sorted by. Not null.
+         */
+        OfComparable(
+            final List<PeekingIterator<T>> sources,
+            final Function<? super T, ? extends K> keyFn)
+        {
+            super(sources);
+            this.keyFn = Objects.requireNonNull(keyFn);
+            this.keys = new Object[heap.length];
+            heapify();
+        }
+
+        @Override
+        void load(final int i) {
+            keys[i] = keyFn.apply(heap[i].peek());
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        int compareKeys(final int i, final int j) {
+            return ((K) keys[i]).compareTo((K) keys[j]);
+        }
+
+        @Override
+        void moveKey(final int from, final int to) {
+            keys[to] = keys[from];
+            keys[from] = null;
+        }
+
+        @Override
+        void swapKeys(final int i, final int j) {
+            final Object k = keys[i];
+            keys[i] = keys[j];
+            keys[j] = k;
+        }
+    }
+}
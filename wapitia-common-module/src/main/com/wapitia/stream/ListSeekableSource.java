@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A {@link SeekableSource} over a sorted random access list, seeking by
+ * binary search.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> Type of the list elements
+ */
+final class ListSeekableSource<T> extends AbstractSeekableSource<T> {
+
+    private final List<T> list;
+    private final Comparator<? super T> comp;
+    private int index = 0;
+
+    /**
+     * Read a sorted list from its start.
+     *
+     * @param list elements sorted by comp, random access. Not null.
+     * @param comp the order of the list. Not null.
+     */
+    ListSeekableSource(final List<T> list, final Comparator<? super T> comp) {
+        this.list = Objects.requireNonNull(list);
+        this.comp = Objects.requireNonNull(comp);
+    }
+
+    @Override
+    boolean hasNextSorted() {
+        return index < list.size();
+    }
+
+    @Override
+    T peekSorted() {
+        if (!hasNextSorted()) {
+            throw new NoSuchElementException();
+        }
+        return list.get(index);
+    }
+
+    @Override
+    T nextSorted() {
+        final T result = peekSorted();
+        index++;
+        return result;
+    }
+
+    @Override
+    void seekSorted(final T key) {
+        int lo = 0;
+        int hi = list.size();
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (comp.compare(list.get(mid), key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        index = lo;
+    }
+}
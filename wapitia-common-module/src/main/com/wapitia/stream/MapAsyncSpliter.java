@@ -0,0 +1,291 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * {@code MapAsyncSpliter<T, R>} maps the elements of a source on an
+ * {@link Executor}, with up to {@code maxInFlight} mappings running or
+ * done and waiting, passing the results along in source order.
+ *
+ * <p>The mappings are kept in a queue in source order, the reorder buffer:
+ * each traversal step tops the queue up to {@code maxInFlight} and then
+ * waits for the oldest. A mapping failing fails the traversal as soon as it
+ * is noticed, even while waiting on an older one, and cancels the others.
+ *
+ * <p>{@link #close()} cancels whatever is still running, interrupting it.
+ * A traversal cut short without being closed, by {@code findFirst} for
+ * instance, has its mappings cancelled once the spliterator is garbage, by
+ * a daemon thread watching a reference queue of the spliterators.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> type of the source elements
+ * @param <R> type of the mapped elements
+ */
+class MapAsyncSpliter<T, R> extends Spliterators.AbstractSpliterator<R> {
+
+    // spliterators gone to garbage, their mappings yet to be cancelled
+    private static final ReferenceQueue<Object> GARBAGE =
+        new ReferenceQueue<>();
+
+    // the cleanups not yet run, kept reachable until they are
+    private static final Set<Cleanup> PENDING = ConcurrentHashMap.newKeySet();
+
+    static {
+        final Thread reaper = new Thread(MapAsyncSpliter::reap,
+            "mapAsync-reaper");
+        reaper.setDaemon(true);
+        reaper.start();
+    }
+
+    private final Iterator<T> source;
+    private final Function<? super T, ? extends R> fn;
+    private final int maxInFlight;
+    private final Executor executor;
+    private final InFlight<R> inFlight = new InFlight<>();
+    private final Cleanup cleanup;
+
+    /**
+     * Runs an action once, when the spliterator is closed or found to be
+     * garbage, whichever comes first.
+     */
+    private static final class Cleanup extends PhantomReference<Object> {
+
+        private final Runnable action;
+
+        Cleanup(final Object referent, final Runnable action) {
+            super(referent, GARBAGE);
+            this.action = action;
+            PENDING.add(this);
+        }
+
+        void clean() {
+            if (PENDING.remove(this)) {
+                clear();
+                action.run();
+            }
+        }
+    }
+
+    /**
+     * Run the cleanups of spliterators as they become garbage, for as long
+     * as the JVM runs.
+     */
+    private static void reap() {
+        while (true) {
+            try {
+                ((Cleanup) GARBAGE.remove()).clean();
+            } catch (final InterruptedException e) {
+                // nothing owns this thread to ask it to stop; carry on
+            }
+        }
+    }
+
+    /**
+     * The running mappings, apart from the spliterator so that the reaper
+     * can reach them once the spliterator is garbage.
+     */
+    private static final class InFlight<R> implements Runnable {
+
+        final ArrayDeque<FutureTask<R>> tasks = new ArrayDeque<>();
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition settled = lock.newCondition();
+        // guarded by lock
+        Throwable failure;
+
+        void done(final FutureTask<R> task) {
+            lock.lock();
+            try {
+                if (failure == null && !task.isCancelled()) {
+                    try {
+                        task.get();
+                    } catch (final ExecutionException e) {
+                        failure = e.getCause();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                settled.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Cancel every mapping.
+         */
+        @Override
+        public void run() {
+            FutureTask<R> task;
+            while ((task = tasks.pollFirst()) != null) {
+                task.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * One mapping, reporting to the {@code InFlight} when done. Static, and
+     * holding the mapping rather than the spliterator, so as not to keep the
+     * spliterator reachable.
+     */
+    private static final class MapTask<T, R> extends FutureTask<R> {
+
+        private final InFlight<R> state;
+
+        MapTask(
+            final Function<? super T, ? extends R> fn,
+            final T item,
+            final InFlight<R> state)
+        {
+            super(() -> fn.apply(item));
+            this.state = state;
+        }
+
+        @Override
+        protected void done() {
+            state.done(this);
+        }
+    }
+
+    /**
+     * Map a source.
+     *
+     * @param source      the source elements. Not null.
+     * @param fn          the mapping. Not null.
+     * @param maxInFlight mappings to have under way at once, at least 1
+     * @param executor    runs the mappings. Not null.
+     */
+    MapAsyncSpliter(
+        final Iterator<T> source,
+        final Function<? super T, ? extends R> fn,
+        final int maxInFlight,
+        final Executor executor)
+    {
+        super(Long.MAX_VALUE, Spliterator.ORDERED);
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException(
+                "maxInFlight < 1: " + maxInFlight);
+        }
+        this.source = Objects.requireNonNull(source);
+        this.fn = Objects.requireNonNull(fn);
+        this.maxInFlight = maxInFlight;
+        this.executor = Objects.requireNonNull(executor);
+        this.cleanup = new Cleanup(this, inFlight);
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super R> action) {
+        Objects.requireNonNull(action);
+        while (inFlight.tasks.size() < maxInFlight && source.hasNext()) {
+            submit(source.next());
+        }
+        final FutureTask<R> head = inFlight.tasks.peekFirst();
+        final boolean advanced = head != null;
+        if (advanced) {
+            action.accept(await(head));
+        }
+        return advanced;
+    }
+
+    private void submit(final T item) {
+        final MapTask<T, R> task = new MapTask<>(fn, item, inFlight);
+        inFlight.tasks.addLast(task);
+        executor.execute(task);
+    }
+
+    /**
+     * Wait for the oldest mapping, or for any mapping to fail.
+     */
+    private R await(final FutureTask<R> head) {
+        Throwable thrown = null;
+        inFlight.lock.lock();
+        try {
+            while (!head.isDone() && inFlight.failure == null) {
+                inFlight.settled.await();
+            }
+            thrown = inFlight.failure;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            thrown = new CancellationException(
+                "interrupted waiting on a mapping");
+        } finally {
+            inFlight.lock.unlock();
+        }
+        R result = null;
+        if (thrown == null) {
+            inFlight.tasks.pollFirst();
+            try {
+                result = head.get();
+            } catch (final ExecutionException | InterruptedException e) {
+                // not reached: the task is done, and didn't fail
+                thrown = e;
+            }
+        }
+        if (thrown != null) {
+            close();
+            if (thrown instanceof RuntimeException) {
+                throw (RuntimeException) thrown;
+            } else if (thrown instanceof Error) {
+                throw (Error) thrown;
+            } else {
+                throw new IllegalStateException(thrown);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cancel the mappings still running.
+     */
+    void close() {
+        cleanup.clean();
+    }
+}
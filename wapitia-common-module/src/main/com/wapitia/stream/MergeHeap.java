@@ -0,0 +1,237 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import com.wapitia.collections.PeekingIterator;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * A binary min-heap of {@link PeekingIterator} sources ordered by their top
+ * elements, the engine behind the k-way merge of {@link FlatSpliter}.
+ *
+ * <p>Finding the least top element costs nothing, and replacing it after a
+ * {@link #pop()} costs {@code O(log k)} comparisons for {@code k} live
+ * sources. Sources are dropped from the heap as soon as they are exhausted.
+ *
+ * <p>Ties between equal top elements go to the source that came first in
+ * the original list, so the merge order is fully predictable.
+ *
+ * <p>Not thread safe; a heap belongs to a single traversal.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> Shared type of elements in the sources
+ */
+class MergeHeap<T> {
+
+    private final Comparator<? super T> comp;
+
+    // heap-ordered sources, the best top element is at index 0
+    private final PeekingIterator<T>[] heap;
+
+    // original list position of each source in heap, the tie breaker
+    private final int[] rank;
+
+    private int size = 0;
+
+    /**
+     * Build a heap from the non-empty sources in the list.
+     *
+     * @param sources   sorted sources to merge. Not null.
+     * @param comp      compares two source items, the "least" of which will
+     *                  be processed first. Not null.
+     */
+    @SuppressWarnings("unchecked")
+    MergeHeap(
+        final List<PeekingIterator<T>> sources,
+        final Comparator<? super T> comp)
+    {
+        Objects.requireNonNull(sources);
+        Objects.requireNonNull(comp);
+        this.comp = comp;
+        this.heap =
+            (PeekingIterator<T>[]) new PeekingIterator<?>[sources.size()];
+        this.rank = new int[sources.size()];
+        int r = 0;
+        for (final PeekingIterator<T> source : sources) {
+            if (source.hasNext()) {
+                heap[size] = source;
+                rank[size] = r;
+                size++;
+            }
+            r++;
+        }
+        for (int i = (size >>> 1) - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * Are all sources exhausted?
+     *
+     * @return true when there are no more elements in any source
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Number of sources not yet exhausted.
+     *
+     * @return live source count
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Look at the least top element among all sources without consuming it.
+     * Do not call on an {@link #isEmpty() empty} heap.
+     *
+     * @return the next element of the merge
+     */
+    T peek() {
+        return heap[0].peek();
+    }
+
+    /**
+     * Consume the least top element among all sources, then restore the
+     * heap, dropping that element's source if it is now exhausted.
+     * Do not call on an {@link #isEmpty() empty} heap.
+     *
+     * @return the next element of the merge
+     */
+    T pop() {
+        final PeekingIterator<T> top = heap[0];
+        final T result = top.next();
+        if (!top.hasNext()) {
+            size--;
+            heap[0] = heap[size];
+            rank[0] = rank[size];
+            heap[size] = null;
+        }
+        if (size > 1) {
+            siftDown(0);
+        }
+        return result;
+    }
+
+    /**
+     * Consume the top source's whole run, that is, its elements up to the
+     * point where its next element would no longer go before the runner-up
+     * source's top element. Then restore the heap, dropping the source if it
+     * is now exhausted.
+     * Do not call on an {@link #isEmpty() empty} heap.
+     *
+     * <p>Each element of a run costs about one comparison, against the
+     * runner-up's top, instead of a trip down the heap. When a single source
+     * remains, the rest of it is one run.
+     *
+     * @param action receives each element of the run, in order
+     * @return the number of elements consumed, at least one
+     */
+    long popRun(final Consumer<? super T> action) {
+        final PeekingIterator<T> top = heap[0];
+        final int topRank = rank[0];
+        long result = 0L;
+        if (size == 1) {
+            while (top.hasNext()) {
+                action.accept(top.next());
+                result++;
+            }
+        } else {
+            final int runnerUp = (size == 2 || before(1, 2)) ? 1 : 2;
+            final T bound = heap[runnerUp].peek();
+            final int boundRank = rank[runnerUp];
+            boolean running = true;
+            while (running) {
+                action.accept(top.next());
+                result++;
+                if (!top.hasNext()) {
+                    running = false;
+                } else {
+                    final int cmp = comp.compare(top.peek(), bound);
+                    running = cmp < 0 || (cmp == 0 && topRank < boundRank);
+                }
+            }
+        }
+        if (!top.hasNext()) {
+            size--;
+            heap[0] = heap[size];
+            rank[0] = rank[size];
+            heap[size] = null;
+        }
+        if (size > 1) {
+            siftDown(0);
+        }
+        return result;
+    }
+
+    /**
+     * Does the source at heap index {@code i} go before the one at {@code j}?
+     */
+    private boolean before(final int i, final int j) {
+        final int cmp = comp.compare(heap[i].peek(), heap[j].peek());
+        return cmp < 0 || (cmp == 0 && rank[i] < rank[j]);
+    }
+
+    private void siftDown(final int from) {
+        int i = from;
+        final int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            final int right = child + 1;
+            if (right < size && before(right, child)) {
+                child = right;
+            }
+            if (!before(child, i)) {
+                break;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(final int i, final int j) {
+        final PeekingIterator<T> s = heap[i];
+        heap[i] = heap[j];
+        heap[j] = s;
+        final int r = rank[i];
+        rank[i] = rank[j];
+        rank[j] = r;
+    }
+}
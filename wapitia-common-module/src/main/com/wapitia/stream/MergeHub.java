@@ -0,0 +1,325 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import com.wapitia.collections.PeekingIterator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A sorted merge whose sources come and go while it is being read.
+ * Producers {@link #attach(Stream) attach} sorted streams to the hub, and
+ * {@link Source#detach() detach} them, from any thread; a single consumer
+ * reads the merge of whatever is attached as one {@link #stream()}, without
+ * the pipeline being rebuilt on every change.
+ *
+ * <p>The hub keeps a watermark, the last element passed to the consumer.
+ * A stream is only attached once its head is known, so the merge never
+ * passes an element beyond the head of a newly attached source; a stream
+ * whose head is below the watermark would break the order and is refused.
+ * Ties between equal elements go to the source attached first.
+ *
+ * <p>While nothing is attached the consumer waits for a source, until the
+ * hub is {@link #complete() completed}, after which the stream ends once
+ * the attached sources run out. Detaching takes effect before the next
+ * element is chosen; the consumer may still be waiting on the detached
+ * source's next element at the time. A source is closed once detached or
+ * exhausted, and closing the consumer's stream closes the hub.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> Shared type of elements of the sources
+ */
+public final class MergeHub<T> implements AutoCloseable {
+
+    private final Comparator<? super T> comp;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    // guarded by lock
+    private final List<Source> attached = new ArrayList<>();
+    private final List<Source> retired = new ArrayList<>();
+    private int version = 0;
+    private boolean completed = false;
+    private boolean closed = false;
+    private boolean streamed = false;
+    private boolean emitted = false;
+    private T watermark;
+
+    /**
+     * A stream attached to a hub.
+     */
+    public final class Source {
+
+        private final Stream<T> stream;
+        private final PeekingIterator<T> items;
+
+        private Source(final Stream<T> stream) {
+            this.stream = stream;
+            this.items = PeekingIterator.of(stream.iterator());
+        }
+
+        /**
+         * Take this source out of the merge, and close it.
+         * Has no effect once it is detached or exhausted.
+         */
+        public void detach() {
+            lock.lock();
+            try {
+                if (attached.remove(this)) {
+                    retired.add(this);
+                    version++;
+                    changed.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * A hub with nothing attached yet.
+     *
+     * @param comp the order of the sources and of the merge. Not null.
+     */
+    public MergeHub(final Comparator<? super T> comp) {
+        this.comp = Objects.requireNonNull(comp);
+    }
+
+    /**
+     * Add a sorted stream to the merge.
+     * This waits for the stream's first element, on the calling thread, and
+     * an empty stream is closed rather than attached.
+     *
+     * @param stream the source, sorted by the hub's comparator. Not null.
+     * @return       a handle to detach the source with
+     * @throws IllegalStateException when the hub is completed, or the
+     *         stream's first element is below the watermark; the stream is
+     *         left open
+     */
+    public Source attach(final Stream<T> stream) {
+        final Source result = new Source(Objects.requireNonNull(stream));
+        final boolean live = result.items.hasNext();
+        lock.lock();
+        try {
+            if (completed) {
+                throw new IllegalStateException("hub is completed");
+            }
+            if (live && emitted
+                && comp.compare(result.items.peek(), watermark) < 0)
+            {
+                throw new IllegalStateException("head "
+                    + result.items.peek() + " is below the watermark "
+                    + watermark);
+            }
+            if (live) {
+                attached.add(result);
+                version++;
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (!live) {
+            stream.close();
+        }
+        return result;
+    }
+
+    /**
+     * Accept no more sources; the merge ends once the attached ones are
+     * exhausted.
+     */
+    public void complete() {
+        lock.lock();
+        try {
+            completed = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The merge of the attached sources, for the single consumer.
+     *
+     * @return the merged stream
+     * @throws IllegalStateException when called a second time
+     */
+    public Stream<T> stream() {
+        lock.lock();
+        try {
+            if (streamed) {
+                throw new IllegalStateException("hub is already streamed");
+            }
+            streamed = true;
+        } finally {
+            lock.unlock();
+        }
+        final Stream<T> result = StreamSupport.stream(new HubSpliter(), false)
+            .onClose(this::close);
+        return result;
+    }
+
+    /**
+     * Complete the hub, detach and close every source.
+     * Call this from the consumer, or once the consumer is done.
+     */
+    @Override
+    public void close() {
+        final List<Source> closing;
+        lock.lock();
+        try {
+            completed = true;
+            closed = true;
+            retired.addAll(attached);
+            attached.clear();
+            version++;
+            closing = takeRetired();
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        closeAll(closing);
+    }
+
+    /**
+     * The retired sources to close, once the lock is released.
+     */
+    private List<Source> takeRetired() {
+        final List<Source> result = new ArrayList<>(retired);
+        retired.clear();
+        return result;
+    }
+
+    private void closeAll(final List<Source> sources) {
+        for (final Source source : sources) {
+            source.stream.close();
+        }
+    }
+
+    /**
+     * Traverses the merge, rebuilding its heap whenever sources attach or
+     * detach. Only the consumer thread touches the heap.
+     */
+    private final class HubSpliter extends Spliterators.AbstractSpliterator<T>
+    {
+        private MergeHeap<T> heap;
+        private int seen = -1;
+
+        HubSpliter() {
+            super(Long.MAX_VALUE, Spliterator.ORDERED);
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            boolean found = false;
+            boolean interrupted = false;
+            final List<Source> closing;
+            lock.lock();
+            try {
+                boolean waiting = true;
+                while (waiting && !closed) {
+                    if (seen != version) {
+                        rebuild();
+                    }
+                    if (!heap.isEmpty()) {
+                        watermark = heap.peek();
+                        emitted = true;
+                        found = true;
+                        waiting = false;
+                    } else if (completed) {
+                        waiting = false;
+                    } else {
+                        changed.await();
+                    }
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                interrupted = true;
+            } finally {
+                closing = takeRetired();
+                lock.unlock();
+            }
+            closeAll(closing);
+            if (interrupted) {
+                throw new CancellationException(
+                    "interrupted waiting on a merge hub");
+            }
+            if (found) {
+                // fetching the source's next head happens outside the lock
+                final int before = heap.size();
+                final T item = heap.pop();
+                if (heap.size() < before) {
+                    // the source ran out; rebuild to retire and close it
+                    seen = -1;
+                }
+                action.accept(item);
+            }
+            return found;
+        }
+
+        /**
+         * Rebuild the heap from the attached sources, retiring exhausted
+         * ones. Every attached source has its head at hand, or is
+         * exhausted, so none of this waits on a source.
+         */
+        private void rebuild() {
+            final List<PeekingIterator<T>> live =
+                new ArrayList<>(attached.size());
+            for (final Source source : new ArrayList<>(attached)) {
+                if (source.items.hasNext()) {
+                    live.add(source.items);
+                } else {
+                    attached.remove(source);
+                    retired.add(source);
+                }
+            }
+            heap = new MergeHeap<>(live, comp);
+            seen = version;
+        }
+    }
+}
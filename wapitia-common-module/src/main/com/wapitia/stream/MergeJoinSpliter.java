@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import com.wapitia.collections.PeekingIterator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * {@code MergeJoinSpliter} joins two streams SORTED by a common key in a
+ * single pass, producing the joined pairs in key order.
+ * Every left element is paired with each right element of the same key
+ * (an inner join); optionally, a left element with no such right element
+ * is paired with {@code null} (a left join).
+ *
+ * <p>It runs in {@code O(n + m)} time plus the output size. The right
+ * elements of the current key are held, so memory is bounded by the largest
+ * group of equal right keys, which is constant for unique keys.
+ *
+ * @author Corey Morgan
+ *
+ * @param <L> type of the left elements
+ * @param <R> type of the right elements
+ * @param <K> type of the join key
+ * @param <O> type of the joined output
+ */
+class MergeJoinSpliter<L, R, K, O> extends Spliterators.AbstractSpliterator<O> {
+
+    private final PeekingIterator<L> left;
+    private final PeekingIterator<R> right;
+    private final Function<? super L, ? extends K> leftKey;
+    private final Function<? super R, ? extends K> rightKey;
+    private final Comparator<? super K> keyComp;
+    private final BiFunction<? super L, ? super R, ? extends O> joiner;
+    private final boolean outer;
+
+    // right elements sharing the current key
+    private final List<R> group = new ArrayList<>();
+    private K groupKey = null;
+
+    // current left element, and its next partner in group
+    private L current = null;
+    private int partner = 0;
+
+    /**
+     * Join two sources sorted by key.
+     *
+     * @param left      the left source. Not null.
+     * @param right     the right source. Not null.
+     * @param leftKey   key of a left element. Not null.
+     * @param rightKey  key of a right element. Not null.
+     * @param keyComp   the key order of both sources. Not null.
+     * @param joiner    joins a left and a right element. Not null.
+     * @param outer     {@code true} for a left join, {@code false} for an
+     *                  inner join
+     */
+    MergeJoinSpliter(
+        final PeekingIterator<L> left,
+        final PeekingIterator<R> right,
+        final Function<? super L, ? extends K> leftKey,
+        final Function<? super R, ? extends K> rightKey,
+        final Comparator<? super K> keyComp,
+        final BiFunction<? super L, ? super R, ? extends O> joiner,
+        final boolean outer)
+    {
+        super(Long.MAX_VALUE, Spliterator.ORDERED);
+        this.left = Objects.requireNonNull(left);
+        this.right = Objects.requireNonNull(right);
+        this.leftKey = Objects.requireNonNull(leftKey);
+        this.rightKey = Objects.requireNonNull(rightKey);
+        this.keyComp = Objects.requireNonNull(keyComp);
+        this.joiner = Objects.requireNonNull(joiner);
+        this.outer = outer;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super O> action) {
+        Objects.requireNonNull(action);
+        boolean advanced = false;
+        while (!advanced) {
+            if (current != null && partner < group.size()) {
+                action.accept(joiner.apply(current, group.get(partner++)));
+                advanced = true;
+            } else if (!left.hasNext()) {
+                break;
+            } else {
+                current = left.next();
+                partner = 0;
+                final K key = leftKey.apply(current);
+                if (group.isEmpty() || keyComp.compare(groupKey, key) != 0) {
+                    regroup(key);
+                }
+                if (group.isEmpty() && outer) {
+                    action.accept(joiner.apply(current, null));
+                    advanced = true;
+                }
+            }
+        }
+        return advanced;
+    }
+
+    /**
+     * Skip the right elements before {@code key} and gather those equal to
+     * it into the group.
+     */
+    private void regroup(final K key) {
+        group.clear();
+        groupKey = key;
+        int cmp = 1;
+        while (right.hasNext()
+            && (cmp = keyComp.compare(rightKey.apply(right.peek()), key)) < 0)
+        {
+            right.next();
+        }
+        while (cmp == 0 && right.hasNext()) {
+            group.add(right.next());
+            cmp = right.hasNext()
+                ? keyComp.compare(rightKey.apply(right.peek()), key)
+                : 1;
+        }
+    }
+
+}
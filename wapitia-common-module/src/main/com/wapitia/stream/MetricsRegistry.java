@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * A set of {@link StreamMetrics} and the {@link MetricsListener}s to report
+ * them to.
+ * Metrics stay registered until closed, which closing an instrumented
+ * stream does. Snapshots are taken only when asked for, by
+ * {@link #snapshots()} or {@link #publish()}; schedule {@code publish} to
+ * report periodically.
+ *
+ * <p>A registry is thread-safe.
+ *
+ * @author Corey Morgan
+ */
+public class MetricsRegistry {
+
+    private final List<StreamMetrics> metrics = new CopyOnWriteArrayList<>();
+    private final List<MetricsListener> listeners =
+        new CopyOnWriteArrayList<>();
+
+    /**
+     * Register new metrics for a pipeline.
+     *
+     * @param name        names the pipeline in snapshots
+     * @param sourceCount number of sources to count, at least 1
+     * @return            the new metrics, all counters zero
+     */
+    public StreamMetrics metrics(final String name, final int sourceCount) {
+        final StreamMetrics result =
+            new StreamMetrics(name, sourceCount, this);
+        metrics.add(result);
+        return result;
+    }
+
+    /**
+     * Add a listener to {@link #publish()} to.
+     *
+     * @param listener the listener. Not null.
+     */
+    public void addListener(final MetricsListener listener) {
+        listeners.add(Objects.requireNonNull(listener));
+    }
+
+    /**
+     * Remove a listener.
+     *
+     * @param listener the listener
+     */
+    public void removeListener(final MetricsListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return a snapshot of each of the registered metrics
+     */
+    public List<StreamMetrics.Snapshot> snapshots() {
+        return metrics.stream()
+            .map(StreamMetrics::snapshot)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Take a snapshot of each of the registered metrics and pass every one
+     * to every listener.
+     */
+    public void publish() {
+        for (final StreamMetrics.Snapshot snapshot : snapshots()) {
+            for (final MetricsListener listener : listeners) {
+                listener.onSnapshot(snapshot);
+            }
+        }
+    }
+
+    void remove(final StreamMetrics m) {
+        metrics.remove(m);
+    }
+}
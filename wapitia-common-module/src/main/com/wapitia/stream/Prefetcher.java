@@ -0,0 +1,290 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * {@code Prefetcher<T>} drains each of a list of streams on its own thread
+ * into a bounded ring buffer, so that slow sources, such as ones reading
+ * files or sockets, fill their buffers concurrently while a consumer reads
+ * from them through {@link #iterators()}.
+ *
+ * <p>All threads are started together on the first read from any of the
+ * iterators. A source's exception is rethrown to the consumer from that
+ * source's iterator, once the elements before it are consumed.
+ * {@link #close()} cancels the threads still running; each thread closes its
+ * own stream when it finishes, for whatever reason.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> Shared type of elements in the streams
+ */
+class Prefetcher<T> implements AutoCloseable {
+
+    private final List<Source> sources;
+    private final ThreadFactory threadFactory;
+    private boolean started = false;
+    private volatile boolean closed = false;
+
+    /**
+     * Prepare to prefetch from the streams, without starting yet.
+     *
+     * @param streams       streams to drain. Not null.
+     * @param depth         ring buffer capacity per stream, at least 1
+     * @param threadFactory makes the draining threads. Not null.
+     */
+    Prefetcher(
+        final List<Stream<T>> streams,
+        final int depth,
+        final ThreadFactory threadFactory)
+    {
+        Objects.requireNonNull(streams);
+        Objects.requireNonNull(threadFactory);
+        if (depth < 1) {
+            throw new IllegalArgumentException("depth < 1: " + depth);
+        }
+        this.threadFactory = threadFactory;
+        this.sources = new ArrayList<>(streams.size());
+        for (final Stream<T> stream : streams) {
+            sources.add(new Source(Objects.requireNonNull(stream), depth));
+        }
+    }
+
+    /**
+     * One iterator per stream, in list order, each reading from that
+     * stream's buffer. Each iterator is for use by a single consumer thread.
+     *
+     * @return iterators over the prefetched streams
+     */
+    List<Iterator<T>> iterators() {
+        return new ArrayList<Iterator<T>>(sources);
+    }
+
+    private synchronized void start() {
+        if (!started && !closed) {
+            started = true;
+            for (final Source source : sources) {
+                source.thread = threadFactory.newThread(source::drain);
+                source.thread.start();
+            }
+        }
+    }
+
+    /**
+     * Cancel any draining still going on. Threads blocked on a full buffer
+     * stop right away, and threads blocked on their source are interrupted.
+     * Consumers waiting on a buffer are released with a
+     * {@link CancellationException}.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        for (final Source source : sources) {
+            source.cancel();
+        }
+    }
+
+    /**
+     * A stream, its draining thread, and the ring buffer between the thread
+     * and the consumer.
+     */
+    private final class Source implements Iterator<T> {
+
+        private final Stream<T> stream;
+        private volatile Thread thread = null;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Condition notFull = lock.newCondition();
+
+        // ring buffer, guarded by lock
+        private final Object[] ring;
+        private int putAt = 0;
+        private int takeAt = 0;
+        private int count = 0;
+        private boolean ended = false;
+        private Throwable failure = null;
+
+        // consumer-side batch, moved out of the ring in one go
+        private final Object[] batch;
+        private int batchAt = 0;
+        private int batchSize = 0;
+        private boolean drained = false;
+
+        Source(final Stream<T> stream, final int depth) {
+            this.stream = stream;
+            this.ring = new Object[depth];
+            this.batch = new Object[depth];
+        }
+
+        /**
+         * Thread body: copy the stream into the ring until it ends, fails
+         * or is cancelled, then close the stream.
+         */
+        void drain() {
+            try {
+                final Iterator<T> it = stream.iterator();
+                while (!closed && it.hasNext()) {
+                    put(it.next());
+                }
+                finish(closed
+                    ? new CancellationException("prefetch cancelled")
+                    : null);
+            } catch (final InterruptedException e) {
+                finish(new CancellationException("prefetch cancelled"));
+            } catch (final Throwable e) {
+                finish(closed
+                    ? new CancellationException("prefetch cancelled")
+                    : e);
+            } finally {
+                stream.close();
+            }
+        }
+
+        private void put(final T item) throws InterruptedException {
+            lock.lock();
+            try {
+                while (count == ring.length && !closed) {
+                    notFull.await();
+                }
+                if (!closed) {
+                    ring[putAt] = item;
+                    putAt = (putAt + 1) % ring.length;
+                    count++;
+                    notEmpty.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void finish(final Throwable t) {
+            lock.lock();
+            try {
+                ended = true;
+                failure = t;
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void cancel() {
+            lock.lock();
+            try {
+                notFull.signal();
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+            final Thread t = thread;
+            if (t != null) {
+                t.interrupt();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (batchAt == batchSize && !drained) {
+                refill();
+            }
+            return batchAt < batchSize;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final T result = (T) batch[batchAt];
+            batch[batchAt++] = null;
+            return result;
+        }
+
+        /**
+         * Move everything in the ring into the batch, waiting for at least
+         * one element or the end of the stream.
+         */
+        private void refill() {
+            start();
+            Throwable thrown = null;
+            lock.lock();
+            try {
+                while (count == 0 && !ended && !closed) {
+                    notEmpty.await();
+                }
+                batchAt = 0;
+                batchSize = count;
+                for (int i = 0; i < count; i++) {
+                    batch[i] = ring[takeAt];
+                    ring[takeAt] = null;
+                    takeAt = (takeAt + 1) % ring.length;
+                }
+                count = 0;
+                notFull.signal();
+                if (batchSize == 0) {
+                    drained = true;
+                    thrown = ended
+                        ? failure
+                        : new CancellationException("prefetch cancelled");
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                thrown = new CancellationException(
+                    "interrupted waiting on a prefetched stream");
+            } finally {
+                lock.unlock();
+            }
+            if (thrown instanceof RuntimeException) {
+                throw (RuntimeException) thrown;
+            } else if (thrown instanceof Error) {
+                throw (Error) thrown;
+            } else if (thrown != null) {
+                throw new IllegalStateException(thrown);
+            }
+        }
+    }
+}
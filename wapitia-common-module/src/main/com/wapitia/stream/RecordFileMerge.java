@@ -0,0 +1,299 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * {@code RecordFileMerge} merges sorted files of fixed-width records by
+ * their {@code long} keys, working on the mapped bytes of the files rather
+ * than on objects.
+ *
+ * <p>Each file is mapped a window of about {@value #WINDOW_BYTES} bytes at
+ * a time, so files of any size are merged in bounded address space. Keys
+ * are read in place and kept in a binary min-heap of primitives, ties
+ * going to the file listed first. Each winning file gives a run of records,
+ * as long as its keys stay below the runner-up's, and the run is handed to
+ * the sink as a single buffer view of the mapped window; nothing is
+ * allocated per record or per run.
+ *
+ * <p>Not thread safe; a merge is run once.
+ *
+ * @author Corey Morgan
+ */
+final class RecordFileMerge implements Closeable {
+
+    static final long WINDOW_BYTES = 64L << 20;
+
+    private final FixedRecordLayout layout;
+    private final int recordSize;
+    private final Source[] sources;
+
+    // heap of the sources having records, by key then by list position
+    private final Source[] heap;
+    private int size = 0;
+
+    /**
+     * One input file and its current mapped window.
+     */
+    private final class Source {
+
+        final int rank;
+        final FileChannel channel;
+        final long fileSize;
+        final long windowBytes;
+
+        long windowStart = 0L;
+        MappedByteBuffer window;
+        // a view of the window handed to the sink, made once per window
+        ByteBuffer view;
+        int pos = 0;
+        int limit = 0;
+        long key;
+
+        Source(final int rank, final Path path) throws IOException {
+            this.rank = rank;
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.fileSize = channel.size();
+            if (fileSize % recordSize != 0L) {
+                channel.close();
+                throw new IllegalArgumentException(path + " holds "
+                    + fileSize + " bytes, not whole records of "
+                    + recordSize);
+            }
+            this.windowBytes =
+                Math.max(1L, WINDOW_BYTES / recordSize) * recordSize;
+        }
+
+        /**
+         * Map the next window.
+         *
+         * @return false when the file is used up
+         */
+        boolean remap() throws IOException {
+            windowStart += limit;
+            final boolean result = windowStart < fileSize;
+            window = null;
+            view = null;
+            pos = 0;
+            limit = 0;
+            if (result) {
+                limit = (int) Math.min(windowBytes, fileSize - windowStart);
+                window = channel.map(FileChannel.MapMode.READ_ONLY,
+                    windowStart, limit);
+                window.order(layout.order());
+                view = window.asReadOnlyBuffer().order(layout.order());
+                key = layout.key(window, 0);
+            }
+            return result;
+        }
+
+        /**
+         * Is this source's head ahead of the other's?
+         */
+        boolean before(final Source other) {
+            return key < other.key || (key == other.key && rank < other.rank);
+        }
+    }
+
+    /**
+     * Open the input files.
+     *
+     * @param inputs files sorted by key. Not null.
+     * @param layout the layout of every file. Not null.
+     * @throws UncheckedIOException when a file can't be opened
+     */
+    RecordFileMerge(final List<Path> inputs, final FixedRecordLayout layout)
+    {
+        Objects.requireNonNull(inputs);
+        this.layout = Objects.requireNonNull(layout);
+        this.recordSize = layout.recordSize();
+        this.sources = new Source[inputs.size()];
+        this.heap = new Source[inputs.size()];
+        try {
+            for (int i = 0; i < sources.length; i++) {
+                sources[i] = new Source(i, inputs.get(i));
+            }
+        } catch (final IOException e) {
+            close();
+            throw new UncheckedIOException(e);
+        } catch (final RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Merge every record into the sink.
+     *
+     * @param sink takes each run of records as a read-only buffer whose
+     *             remaining bytes are the run; it must not keep the buffer
+     * @return the number of records merged
+     */
+    long merge(final Consumer<? super ByteBuffer> sink) {
+        long result = 0L;
+        try {
+            for (final Source source : sources) {
+                if (source.remap()) {
+                    heap[size++] = source;
+                }
+            }
+            for (int i = (size >>> 1) - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+            while (size > 0) {
+                final Source top = heap[0];
+                final Source runnerUp = size == 1
+                    ? null
+                    : size == 2 || heap[1].before(heap[2])
+                        ? heap[1]
+                        : heap[2];
+                final int start = top.pos;
+                do {
+                    top.pos += recordSize;
+                    if (top.pos < top.limit) {
+                        top.key = layout.key(top.window, top.pos);
+                    }
+                } while (top.pos < top.limit
+                    && (runnerUp == null || top.before(runnerUp)));
+                top.view.limit(top.pos).position(start);
+                sink.accept(top.view);
+                result += (top.pos - start) / recordSize;
+                if (top.pos == top.limit && !top.remap()) {
+                    heap[0] = heap[--size];
+                    heap[size] = null;
+                }
+                if (size > 0) {
+                    siftDown(0);
+                }
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+
+    private void siftDown(final int from) {
+        int i = from;
+        final Source moving = heap[i];
+        int child;
+        while ((child = 2 * i + 1) < size) {
+            if (child + 1 < size && heap[child + 1].before(heap[child])) {
+                child++;
+            }
+            if (!heap[child].before(moving)) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = moving;
+    }
+
+    /**
+     * Close every input file.
+     */
+    @Override
+    public void close() {
+        IOException failure = null;
+        for (final Source source : sources) {
+            if (source != null) {
+                try {
+                    source.channel.close();
+                } catch (final IOException e) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    /**
+     * A sink writing runs to a channel, gathering short runs in a direct
+     * buffer and writing long ones straight from the mapped files.
+     */
+    static final class ChannelSink implements Consumer<ByteBuffer> {
+
+        static final int BUFFER_BYTES = 1 << 20;
+
+        private final WritableByteChannel out;
+        private final ByteBuffer buffer =
+            ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+        ChannelSink(final WritableByteChannel out) {
+            this.out = Objects.requireNonNull(out);
+        }
+
+        @Override
+        public void accept(final ByteBuffer run) {
+            try {
+                if (run.remaining() > buffer.remaining()) {
+                    flush();
+                }
+                if (run.remaining() > buffer.remaining()) {
+                    while (run.hasRemaining()) {
+                        out.write(run);
+                    }
+                } else {
+                    buffer.put(run);
+                }
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Write out whatever is gathered.
+         */
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes items to and reads them back from {@link ByteBuffer}s, for stream
+ * operators that keep items off heap, such as
+ * {@link Streams#sortedExternal Streams.sortedExternal}.
+ *
+ * <p>Records must be self-delimiting: {@link #read(ByteBuffer)} consumes
+ * exactly the bytes that {@link #write(Object, ByteBuffer)} produced for the
+ * item.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> type of the items
+ */
+public interface RecordSerializer<T> {
+
+    /**
+     * The number of bytes {@link #write(Object, ByteBuffer)} will produce
+     * for the item.
+     *
+     * @param item item to measure
+     * @return size of the item's record, in bytes
+     */
+    int sizeOf(T item);
+
+    /**
+     * Write the item's record at the buffer's position, advancing it.
+     * The buffer has at least {@link #sizeOf(Object) sizeOf(item)} bytes
+     * remaining.
+     *
+     * @param item item to write
+     * @param buffer destination buffer
+     */
+    void write(T item, ByteBuffer buffer);
+
+    /**
+     * Read a record at the buffer's position, advancing it past the record.
+     *
+     * @param buffer source buffer
+     * @return the item read
+     */
+    T read(ByteBuffer buffer);
+}
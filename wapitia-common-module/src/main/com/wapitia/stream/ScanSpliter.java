@@ -0,0 +1,265 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleConsumer;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongConsumer;
+
+/**
+ * Sequential running aggregates, the fallback of the scans of
+ * {@link Streams} when the source can't be split for a parallel prefix.
+ *
+ * <p>Each spliterator folds the source elements into an accumulator as it
+ * passes them along, element {@code i} of the result being
+ * {@code identity op x0 op ... op xi}. The spliterator is its own
+ * consumer of the source, so no object is made per element, and none at
+ * all for the primitive scans. The result is as SIZED as the source, and
+ * doesn't split.
+ *
+ * @author Corey Morgan
+ */
+final class ScanSpliter {
+
+    /**
+     * What a parallel source needs to be scanned as a parallel prefix
+     * instead: known sizes, all the way down its splits.
+     */
+    static final int SPLITTABLE = Spliterator.SIZED | Spliterator.SUBSIZED;
+
+    /**
+     * The characteristics of a parallel prefix, an array of aggregates.
+     */
+    static final int PREFIXED =
+        SPLITTABLE | Spliterator.ORDERED | Spliterator.IMMUTABLE;
+
+    private ScanSpliter() {
+    }
+
+    private static int characteristics(final Spliterator<?> source) {
+        return Spliterator.ORDERED
+            | source.characteristics()
+                & (Spliterator.SIZED | Spliterator.SUBSIZED);
+    }
+
+    /**
+     * A running aggregate of objects.
+     *
+     * @param <T> type of the elements
+     */
+    static final class OfRef<T> implements Spliterator<T>, Consumer<T> {
+
+        private final Spliterator<T> source;
+        private final BinaryOperator<T> op;
+        private T acc;
+        private Consumer<? super T> downstream;
+
+        /**
+         * Scan a source.
+         *
+         * @param source   the elements to fold. Not null.
+         * @param identity the accumulator before the first element
+         * @param op       the associative fold. Not null.
+         */
+        OfRef(
+            final Spliterator<T> source,
+            final T identity,
+            final BinaryOperator<T> op)
+        {
+            this.source = Objects.requireNonNull(source);
+            this.op = Objects.requireNonNull(op);
+            this.acc = identity;
+        }
+
+        @Override
+        public void accept(final T item) {
+            acc = op.apply(acc, item);
+            downstream.accept(acc);
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super T> action) {
+            downstream = Objects.requireNonNull(action);
+            return source.tryAdvance(this);
+        }
+
+        @Override
+        public void forEachRemaining(final Consumer<? super T> action) {
+            downstream = Objects.requireNonNull(action);
+            source.forEachRemaining(this);
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return source.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return ScanSpliter.characteristics(source);
+        }
+    }
+
+    /**
+     * A running aggregate of {@code long}s.
+     */
+    static final class OfLong implements Spliterator.OfLong, LongConsumer {
+
+        private final Spliterator.OfLong source;
+        private final LongBinaryOperator op;
+        private long acc;
+        private LongConsumer downstream;
+
+        /**
+         * Scan a source.
+         *
+         * @param source   the elements to fold. Not null.
+         * @param identity the accumulator before the first element
+         * @param op       the associative fold. Not null.
+         */
+        OfLong(
+            final Spliterator.OfLong source,
+            final long identity,
+            final LongBinaryOperator op)
+        {
+            this.source = Objects.requireNonNull(source);
+            this.op = Objects.requireNonNull(op);
+            this.acc = identity;
+        }
+
+        @Override
+        public void accept(final long item) {
+            acc = op.applyAsLong(acc, item);
+            downstream.accept(acc);
+        }
+
+        @Override
+        public boolean tryAdvance(final LongConsumer action) {
+            downstream = Objects.requireNonNull(action);
+            return source.tryAdvance((LongConsumer) this);
+        }
+
+        @Override
+        public void forEachRemaining(final LongConsumer action) {
+            downstream = Objects.requireNonNull(action);
+            source.forEachRemaining((LongConsumer) this);
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return source.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return ScanSpliter.characteristics(source) | Spliterator.NONNULL;
+        }
+    }
+
+    /**
+     * A running aggregate of {@code double}s.
+     */
+    static final class OfDouble
+        implements Spliterator.OfDouble, DoubleConsumer
+    {
+        private final Spliterator.OfDouble source;
+        private final DoubleBinaryOperator op;
+        private double acc;
+        private DoubleConsumer downstream;
+
+        /**
+         * Scan a source.
+         *
+         * @param source   the elements to fold. Not null.
+         * @param identity the accumulator before the first element
+         * @param op       the associative fold. Not null.
+         */
+        OfDouble(
+            final Spliterator.OfDouble source,
+            final double identity,
+            final DoubleBinaryOperator op)
+        {
+            this.source = Objects.requireNonNull(source);
+            this.op = Objects.requireNonNull(op);
+            this.acc = identity;
+        }
+
+        @Override
+        public void accept(final double item) {
+            acc = op.applyAsDouble(acc, item);
+            downstream.accept(acc);
+        }
+
+        @Override
+        public boolean tryAdvance(final DoubleConsumer action) {
+            downstream = Objects.requireNonNull(action);
+            return source.tryAdvance((DoubleConsumer) this);
+        }
+
+        @Override
+        public void forEachRemaining(final DoubleConsumer action) {
+            downstream = Objects.requireNonNull(action);
+            source.forEachRemaining((DoubleConsumer) this);
+        }
+
+        @Override
+        public Spliterator.OfDouble trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return source.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return ScanSpliter.characteristics(source) | Spliterator.NONNULL;
+        }
+    }
+}
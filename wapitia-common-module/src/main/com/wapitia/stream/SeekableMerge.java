@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import com.wapitia.collections.PeekingIterator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A k-way merge of {@link SeekableSource}s, as
+ * {@link Streams#streamFlatten(List, Comparator)} merges streams, that can
+ * {@link #seek(Object) seek} to a key before or during the merge.
+ *
+ * <p>A seek moves every source to its first element not before the key
+ * and rebuilds the heap of source heads, in {@code O(k log n)} for
+ * {@code k} sources of up to {@code n} elements, however many elements it
+ * skips. Seeking backward works as well as forward. Ties go to the
+ * source listed first.
+ *
+ * <p>Not thread safe. Closing the merge closes every source.
+ *
+ * <pre>{@code
+ *     try (SeekableMerge<Txn> merge = new SeekableMerge<>(sources, byDate)) {
+ *         merge.seek(Txn.on(since));
+ *         merge.stream().forEach(...);
+ *     }
+ * }</pre>
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> Shared type of the source elements
+ */
+public class SeekableMerge<T> implements Iterator<T>, AutoCloseable {
+
+    private final List<SeekableSource<T>> sources;
+    private final Comparator<? super T> comp;
+    private MergeHeap<T> heap;
+
+    /**
+     * Merge sources from where they stand.
+     *
+     * @param sources sources sorted by {@code comp}, in order of priority.
+     *                Not null.
+     * @param comp    the order of the sources, the same as the sources seek
+     *                by. Not null.
+     */
+    public SeekableMerge(
+        final List<? extends SeekableSource<T>> sources,
+        final Comparator<? super T> comp)
+    {
+        this.sources = new ArrayList<>(Objects.requireNonNull(sources));
+        this.comp = Objects.requireNonNull(comp);
+    }
+
+    /**
+     * Move every source to its first element not before {@code key}, so
+     * that the merge goes on from there.
+     *
+     * @param key where to go; only its sort key matters
+     */
+    public void seek(final T key) {
+        for (final SeekableSource<T> source : sources) {
+            source.seek(key);
+        }
+        heap = null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heap().isEmpty();
+    }
+
+    /**
+     * The next element of the merge, without taking it.
+     *
+     * @return the least head among the sources
+     * @throws NoSuchElementException when every source is used up
+     */
+    public T peek() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return heap.peek();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return heap.pop();
+    }
+
+    /**
+     * The rest of the merge as a sequential stream, which goes on from
+     * wherever the merge stands when it is read. Closing the stream closes
+     * the merge.
+     *
+     * @return the elements left in the merge
+     */
+    public Stream<T> stream() {
+        final Spliterator<T> spltr = Spliterators.spliteratorUnknownSize(
+            this, Spliterator.ORDERED);
+        final Stream<T> result = StreamSupport.stream(spltr, false)
+            .onClose(this::close);
+        return result;
+    }
+
+    /**
+     * Close every source.
+     */
+    @Override
+    public void close() {
+        RuntimeException failure = null;
+        for (final SeekableSource<T> source : sources) {
+            try {
+                source.close();
+            } catch (final RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * The heap of source heads, rebuilt after a seek.
+     */
+    private MergeHeap<T> heap() {
+        if (heap == null) {
+            heap = new MergeHeap<>(new ArrayList<PeekingIterator<T>>(sources),
+                comp);
+        }
+        return heap;
+    }
+}
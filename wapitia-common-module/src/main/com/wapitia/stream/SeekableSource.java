@@ -0,0 +1,145 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import com.wapitia.collections.PeekingIterator;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A sorted source that can be moved to a key without reading the elements
+ * before it: {@link #seek(Object)} puts it at the first element not before
+ * the key, by binary search, in {@code O(log n)}.
+ *
+ * <p>A {@link SeekableMerge} of {@code k} such sources skips to a key in
+ * {@code O(k log n)}, where a merge of plain streams would read and drop
+ * every element before it.
+ *
+ * <p>Sources are {@link PeekingIterator}s, to be merged by the same heap as
+ * other sources. Items pushed back come out before the sorted elements,
+ * until the next seek drops them. Close a source to release what it reads
+ * from, a file for instance.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> Type of the source elements
+ */
+public interface SeekableSource<T> extends PeekingIterator<T>, AutoCloseable {
+
+    /**
+     * Move to the first element not before {@code key}, backward or
+     * forward, or to the end when every element is before it, dropping
+     * any items pushed back.
+     *
+     * @param key where to go; only its sort key matters
+     */
+    void seek(T key);
+
+    /**
+     * Release whatever the source reads from. Does nothing by default.
+     */
+    @Override
+    default void close() {
+    }
+
+    /**
+     * A source over a sorted list, which is copied when it isn't
+     * {@link RandomAccess}. The list is not copied otherwise, so it must
+     * not change while the source is in use.
+     *
+     * @param <T>    Type of the list elements
+     * @param sorted Elements sorted by {@code comp}
+     * @param comp   The order of {@code sorted}
+     * @return       A source at the start of the list
+     */
+    static <T> SeekableSource<T> of(
+        final List<T> sorted,
+        final Comparator<? super T> comp)
+    {
+        final List<T> list = sorted instanceof RandomAccess
+            ? sorted
+            : new ArrayList<>(sorted);
+        return new ListSeekableSource<>(list, comp);
+    }
+
+    /**
+     * A source over a sorted array, which is not copied.
+     *
+     * @param <T>    Type of the array elements
+     * @param sorted Elements sorted by {@code comp}
+     * @param comp   The order of {@code sorted}
+     * @return       A source at the start of the array
+     */
+    static <T> SeekableSource<T> of(
+        final T[] sorted,
+        final Comparator<? super T> comp)
+    {
+        return new ListSeekableSource<>(Arrays.asList(sorted), comp);
+    }
+
+    /**
+     * A source over a file of fixed-width records sorted by a {@code long}
+     * key, laid out as {@code layout} says. Record {@code i} lies at byte
+     * {@code i * recordSize}, so seeking is a binary search over record
+     * numbers, reading only the keys it probes. Records are read a block
+     * at a time and made into elements by {@code decoder}, which is given a
+     * buffer positioned at the record, in the layout's byte order, and
+     * valid only during the call.
+     *
+     * @param <T>     Type of the elements made from the records
+     * @param file    File of whole records sorted by key
+     * @param layout  The layout of the records
+     * @param decoder Makes an element from a record
+     * @param key     The key of an element, equal to its record's key, used
+     *                on the keys given to {@link #seek(Object)}
+     * @return        A source at the start of the file; close it to close
+     *                the file
+     * @throws java.io.UncheckedIOException when the file can't be opened
+     */
+    static <T> SeekableSource<T> ofFile(
+        final Path file,
+        final FixedRecordLayout layout,
+        final Function<? super ByteBuffer, ? extends T> decoder,
+        final ToLongFunction<? super T> key)
+    {
+        return new FileSeekableSource<>(file, layout, decoder, key);
+    }
+}
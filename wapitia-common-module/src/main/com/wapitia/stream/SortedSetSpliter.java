@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import com.wapitia.collections.PeekingIterator;
+
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * {@code SortedSetSpliter<T>} combines two streams SORTED by the same
+ * {@link Comparator} in a single pass, as a set operation: the elements of
+ * the first stream that do or don't have an equal in the second, or the
+ * distinct elements of both.
+ *
+ * <p>Only the top element of each stream is held at any time, so it runs in
+ * {@code O(n + m)} time and constant memory. Unsorted streams will yield
+ * predictable but hard to anticipate results.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> Shared type of elements in the input and output stream
+ */
+class SortedSetSpliter<T> extends Spliterators.AbstractSpliterator<T> {
+
+    /**
+     * The set operations.
+     */
+    enum Op {
+        /** elements of the first stream having an equal in the second */
+        INTERSECT,
+        /** elements of the first stream having no equal in the second */
+        DIFFERENCE,
+        /** one of each distinct element of either stream */
+        UNION
+    }
+
+    private final PeekingIterator<T> first;
+    private final PeekingIterator<T> second;
+    private final Comparator<? super T> comp;
+    private final Op op;
+
+    /**
+     * Combine two sorted sources.
+     *
+     * @param first     the first source. Not null.
+     * @param second    the second source. Not null.
+     * @param comp      the order of both sources. Not null.
+     * @param op        what to produce. Not null.
+     */
+    SortedSetSpliter(
+        final PeekingIterator<T> first,
+        final PeekingIterator<T> second,
+        final Comparator<? super T> comp,
+        final Op op)
+    {
+        super(Long.MAX_VALUE, Spliterator.ORDERED);
+        Objects.requireNonNull(first);
+        Objects.requireNonNull(second);
+        Objects.requireNonNull(comp);
+        Objects.requireNonNull(op);
+        this.first = first;
+        this.second = second;
+        this.comp = comp;
+        this.op = op;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super T> action) {
+        Objects.requireNonNull(action);
+        final boolean advanced;
+        if (op == Op.UNION) {
+            advanced = advanceUnion(action);
+        } else {
+            advanced = advanceFirst(action, op == Op.INTERSECT);
+        }
+        return advanced;
+    }
+
+    /**
+     * Pass along the next element of the first stream whose match in the
+     * second stream is as wanted, skipping the second stream's elements as
+     * they fall behind.
+     */
+    private boolean advanceFirst(
+        final Consumer<? super T> action,
+        final boolean matched)
+    {
+        boolean advanced = false;
+        boolean more = first.hasNext();
+        while (more && !advanced) {
+            final T item = first.peek();
+            int cmp = 1;
+            while (second.hasNext()
+                && (cmp = comp.compare(second.peek(), item)) < 0)
+            {
+                second.next();
+            }
+            final boolean found = cmp == 0 && second.hasNext();
+            if (found == matched) {
+                action.accept(first.next());
+                advanced = true;
+            } else if (!second.hasNext()) {
+                // nothing more can match
+                more = false;
+            } else {
+                first.next();
+                more = first.hasNext();
+            }
+        }
+        return advanced;
+    }
+
+    /**
+     * Pass along the least top element, then skip past every element equal
+     * to it in both streams.
+     */
+    private boolean advanceUnion(final Consumer<? super T> action) {
+        final boolean advanced = first.hasNext() || second.hasNext();
+        if (advanced) {
+            final T item;
+            if (!second.hasNext()
+                || (first.hasNext()
+                    && comp.compare(first.peek(), second.peek()) <= 0))
+            {
+                item = first.next();
+            } else {
+                item = second.next();
+            }
+            while (first.hasNext() && comp.compare(first.peek(), item) == 0) {
+                first.next();
+            }
+            while (second.hasNext()
+                && comp.compare(second.peek(), item) == 0)
+            {
+                second.next();
+            }
+            action.accept(item);
+        }
+        return advanced;
+    }
+
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of one instrumented stream pipeline, such as a merge, kept per
+ * source: the elements each source has given, the time spent waiting on it,
+ * and how long its head has waited to be taken.
+ *
+ * <p>Counters are {@link LongAdder}s, or fields written by a single
+ * source only, so sources read on different threads don't contend on
+ * them: nothing written per element is shared between sources. Pipelines
+ * built without metrics don't touch any of this, so metrics cost nothing
+ * until asked for. A {@link Snapshot} reads all the counters at once.
+ *
+ * <p>Obtain metrics from {@link MetricsRegistry#metrics(String, int)}, then
+ * pass them to an instrumented operator such as
+ * {@link Streams#streamFlatten(java.util.List, Comparator, StreamMetrics)},
+ * or wrap the inputs of any operator with
+ * {@link Streams#instrument(java.util.stream.Stream, StreamMetrics, int)}
+ * and its comparator with {@link #counting(Comparator)}.
+ *
+ * @author Corey Morgan
+ */
+public final class StreamMetrics {
+
+    private final String name;
+    private final MetricsRegistry registry;
+    private final LongAdder comparisons = new LongAdder();
+    private final Source[] sources;
+
+    /**
+     * Counters of a single source.
+     */
+    static final class Source {
+
+        final LongAdder emitted = new LongAdder();
+        final LongAdder blockedNanos = new LongAdder();
+
+        // when the source last gave an element, written by its reader only
+        volatile long lastTakenNanos;
+
+        Source(final long createdNanos) {
+            this.lastTakenNanos = createdNanos;
+        }
+    }
+
+    StreamMetrics(
+        final String name,
+        final int sourceCount,
+        final MetricsRegistry registry)
+    {
+        if (sourceCount < 1) {
+            throw new IllegalArgumentException(
+                "sourceCount < 1: " + sourceCount);
+        }
+        this.name = Objects.requireNonNull(name);
+        this.registry = registry;
+        this.sources = new Source[sourceCount];
+        final long created = System.nanoTime();
+        for (int i = 0; i < sourceCount; i++) {
+            sources[i] = new Source(created);
+        }
+    }
+
+    /**
+     * @return the name these metrics were registered under
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return the number of sources counted
+     */
+    public int sourceCount() {
+        return sources.length;
+    }
+
+    /**
+     * Wrap a comparator so that its calls are counted here.
+     *
+     * @param <T>  type of the compared elements
+     * @param comp the comparator to count
+     * @return     a comparator ordering as {@code comp} does
+     */
+    public <T> Comparator<T> counting(final Comparator<? super T> comp) {
+        Objects.requireNonNull(comp);
+        return (a, b) -> {
+            comparisons.increment();
+            return comp.compare(a, b);
+        };
+    }
+
+    /**
+     * Read all counters.
+     *
+     * @return the counters as of now
+     */
+    public Snapshot snapshot() {
+        final long now = System.nanoTime();
+        final long[] emitted = new long[sources.length];
+        final long[] blocked = new long[sources.length];
+        final long[] lag = new long[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            emitted[i] = sources[i].emitted.sum();
+            blocked[i] = sources[i].blockedNanos.sum();
+            lag[i] = Math.max(0L, now - sources[i].lastTakenNanos);
+        }
+        return new Snapshot(name, comparisons.sum(), emitted, blocked, lag);
+    }
+
+    /**
+     * Stop reporting these metrics through their registry.
+     */
+    public void close() {
+        if (registry != null) {
+            registry.remove(this);
+        }
+    }
+
+    Source source(final int index) {
+        return sources[index];
+    }
+
+    /**
+     * The counters of a {@link StreamMetrics} at one moment.
+     * As the counters are read one after the other while they may be
+     * changing, they are consistent with each other only approximately.
+     */
+    public static final class Snapshot {
+
+        private final String name;
+        private final long comparisons;
+        private final long[] emitted;
+        private final long[] blockedNanos;
+        private final long[] headLagNanos;
+
+        Snapshot(
+            final String name,
+            final long comparisons,
+            final long[] emitted,
+            final long[] blockedNanos,
+            final long[] headLagNanos)
+        {
+            this.name = name;
+            this.comparisons = comparisons;
+            this.emitted = emitted;
+            this.blockedNanos = blockedNanos;
+            this.headLagNanos = headLagNanos;
+        }
+
+        /**
+         * @return the name of the metrics
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * @return the number of sources counted
+         */
+        public int sourceCount() {
+            return emitted.length;
+        }
+
+        /**
+         * @return calls of the comparator wrapped by
+         *         {@link StreamMetrics#counting(Comparator)}
+         */
+        public long comparisons() {
+            return comparisons;
+        }
+
+        /**
+         * @param source index of the source
+         * @return elements taken from the source
+         */
+        public long emitted(final int source) {
+            return emitted[source];
+        }
+
+        /**
+         * @return elements taken from all sources
+         */
+        public long emitted() {
+            long result = 0L;
+            for (final long e : emitted) {
+                result += e;
+            }
+            return result;
+        }
+
+        /**
+         * @param source index of the source
+         * @return nanoseconds spent in the source's {@code hasNext} and
+         *         {@code next}
+         */
+        public long blockedNanos(final int source) {
+            return blockedNanos[source];
+        }
+
+        /**
+         * A source whose head lags far behind the others is rarely the
+         * least, so its stream is read slowly; a source lagging while its
+         * blocked time grows is holding the pipeline up.
+         *
+         * @param source index of the source
+         * @return nanoseconds since an element was last taken from the
+         *         source, or since the metrics were made if none was
+         */
+        public long headLagNanos(final int source) {
+            return headLagNanos[source];
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder result = new StringBuilder(name)
+                .append("{comparisons=").append(comparisons);
+            for (int i = 0; i < emitted.length; i++) {
+                result.append(", ").append(i)
+                    .append("={emitted=").append(emitted[i])
+                    .append(", blockedNanos=").append(blockedNanos[i])
+                    .append(", headLagNanos=").append(headLagNanos[i])
+                    .append('}');
+            }
+            return result.append('}').toString();
+        }
+    }
+}
@@ -32,10 +32,41 @@
 
 package com.wapitia.stream;
 
+import com.wapitia.collections.PeekingIterator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.Function;
+import java.util.function.IntBinaryOperator;
+import java.util.function.LongBinaryOperator;
 import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -55,6 +86,12 @@ public class Streams {
      * Pass through a stream while a condition is met.
      * When the condition is no longer met, the stream is terminated.
      *
+     * <p>The result is parallel when the incoming stream is, and splits
+     * along with it, keeping encounter order. In parallel, the condition is
+     * tested over the whole incoming stream at once, with the elements read
+     * buffered until the outcome is known. Closing the result closes the
+     * incoming stream.
+     *
      * <p><b>Usage:</b>
      * <br> &nbsp;&nbsp;&nbsp;&nbsp;
      * {@code Stream<Integer> doubles = Stream.iterate(1, i -> 2*i);}
@@ -74,10 +111,41 @@ public class Streams {
         final Stream<T> stream,
         final Predicate<T> whileCond)
     {
-        final Spliterator<T> spliter = new WhileSpliter<T>(stream, whileCond);
-        final Stream<T> result = StreamSupport.stream(spliter, false);
-        //        Stream<T> result = null;
-        //        stream.peek(t -> {}).allMatch(whileCond);
+        final Spliterator<T> spliter =
+            new WhileSpliter<T>(stream.spliterator(), whileCond, false);
+        final Stream<T> result =
+            StreamSupport.stream(spliter, stream.isParallel())
+                .onClose(stream::close);
+        return result;
+    }
+
+    /**
+     * Skip the elements of a stream while a condition is met, then pass
+     * through the rest of it, starting with the first element not meeting
+     * the condition.
+     *
+     * <p>The result is parallel when the incoming stream is, and splits
+     * along with it, keeping encounter order. Closing the result closes the
+     * incoming stream.
+     *
+     * @param stream incoming stream
+     * @param whileCond skip elements of the stream while this is met
+     *
+     * @param <T> type of the items in the stream
+     * @return the elements of the incoming stream from the first one where
+     *             the `whileCond` predicate returns false.
+     * @see Stream#skip
+     */
+    @Deprecated   // use jdk9 Stream.dropWhile(Predicate<T>) when it's ready
+    public static <T> Stream<T> dropWhile(
+        final Stream<T> stream,
+        final Predicate<T> whileCond)
+    {
+        final Spliterator<T> spliter =
+            new WhileSpliter<T>(stream.spliterator(), whileCond, true);
+        final Stream<T> result =
+            StreamSupport.stream(spliter, stream.isParallel())
+                .onClose(stream::close);
         return result;
     }
 
@@ -112,4 +180,1689 @@ public class Streams {
         return result;
     }
 
+    /**
+     * Put a nearly sorted stream in order, one in which no element comes
+     * after more than {@code slack} elements that should follow it, holding
+     * at most {@code slack + 1} elements at a time. Use this to feed
+     * {@link #streamFlatten(List, Comparator)}, which needs sorted streams,
+     * from feeds arriving slightly out of order, without a full
+     * {@code sorted()} reading the whole feed first.
+     *
+     * <p>Equal elements keep their order. An element out of place by more
+     * than the slack fails the result with an
+     * {@link IllegalStateException}.
+     *
+     * @param <T>    Stream item type
+     * @param stream Nearly sorted items
+     * @param comp   Comparator giving the order to restore
+     * @param slack  Places an element may be out, at least 0
+     * @return       The items of {@code stream}, sorted
+     * @see #sortBounded(Stream, Comparator, int, Consumer)
+     */
+    public static <T> Stream<T> sortBounded(
+        final Stream<T> stream,
+        final Comparator<? super T> comp,
+        final int slack)
+    {
+        return sortBounded(stream, comp, slack, null);
+    }
+
+    /**
+     * Put a nearly sorted stream in order, one in which no element comes
+     * after more than {@code slack} elements that should follow it, holding
+     * at most {@code slack + 1} elements at a time, passing the elements
+     * out of place by more than the slack to {@code late} instead of the
+     * result. Equal elements keep their order. Closing the result closes
+     * {@code stream}.
+     *
+     * @param <T>    Stream item type
+     * @param stream Nearly sorted items
+     * @param comp   Comparator giving the order to restore
+     * @param slack  Places an element may be out, at least 0
+     * @param late   Takes the elements too late to be put in order, or
+     *               null to fail on them
+     * @return       The items of {@code stream} but the late ones, sorted
+     */
+    public static <T> Stream<T> sortBounded(
+        final Stream<T> stream,
+        final Comparator<? super T> comp,
+        final int slack,
+        final Consumer<? super T> late)
+    {
+        final Spliterator<T> spltr = new BoundedSortSpliter<>(
+            stream.spliterator(), comp, slack, late);
+        final Stream<T> result = StreamSupport.stream(spltr, false)
+            .onClose(stream::close);
+        return result;
+    }
+
+    /**
+     * Put a stream in order by a {@code long} key, such as a time stamp,
+     * when no element's key is more than {@code slack} below a key before
+     * it, holding only the elements within {@code slack} of the greatest
+     * key so far. An event feed up to five seconds late, sorted by its
+     * millisecond time stamps, is {@code sortBoundedByKey(feed,
+     * Event::millis, 5000)}.
+     *
+     * <p>Equal keys keep their order. An element later than the slack
+     * allows fails the result with an {@link IllegalStateException}.
+     *
+     * @param <T>    Stream item type
+     * @param stream Nearly sorted items
+     * @param key    Key to sort on
+     * @param slack  Distance a key may be below an earlier key, at least 0
+     * @return       The items of {@code stream}, sorted by key
+     * @see #sortBoundedByKey(Stream, ToLongFunction, long, Consumer)
+     */
+    public static <T> Stream<T> sortBoundedByKey(
+        final Stream<T> stream,
+        final ToLongFunction<? super T> key,
+        final long slack)
+    {
+        return sortBoundedByKey(stream, key, slack, null);
+    }
+
+    /**
+     * Put a stream in order by a {@code long} key when no element's key is
+     * more than {@code slack} below a key before it, passing the elements
+     * later than that, those that can no longer be put in order, to
+     * {@code late} instead of the result. Equal keys keep their order.
+     * Closing the result closes {@code stream}.
+     *
+     * @param <T>    Stream item type
+     * @param stream Nearly sorted items
+     * @param key    Key to sort on
+     * @param slack  Distance a key may be below an earlier key, at least 0
+     * @param late   Takes the elements too late to be put in order, or
+     *               null to fail on them
+     * @return       The items of {@code stream} but the late ones, sorted
+     *               by key
+     */
+    public static <T> Stream<T> sortBoundedByKey(
+        final Stream<T> stream,
+        final ToLongFunction<? super T> key,
+        final long slack,
+        final Consumer<? super T> late)
+    {
+        final Spliterator<T> spltr = new BoundedSortSpliter<>(
+            stream.spliterator(), key, slack, late);
+        final Stream<T> result = StreamSupport.stream(spltr, false)
+            .onClose(stream::close);
+        return result;
+    }
+
+    /**
+     * A {@link Stream} pulling from a {@link List} of similar streams, each
+     * sorted by a {@code long} key, as
+     * {@code streamFlatten(streams, Comparator.comparingLong(key))} does,
+     * but taking each element's key once, when it comes to the head of its
+     * stream, and comparing the stored keys as {@code long}s from then on.
+     * Equal keys go to the stream listed first.
+     * Closing the result closes every stream.
+     *
+     * <p>A merge of {@code k} streams makes about {@code log2 k}
+     * comparisons per element; this trades them for one key per element.
+     * That pays off over many streams, or when the comparator is costly,
+     * but with a few streams a key costlier to take than the elements are
+     * to compare makes this the slower: two streams of records merged by a
+     * {@code LocalDate} as epoch days run about a fifth slower than with
+     * {@code Comparator.comparing} on the date, while sixteen run about
+     * half again as fast.
+     *
+     * @param <T>     Shared stream item type
+     * @param streams List of streams sorted by {@code key}
+     * @param key     Key the streams are sorted by
+     * @return        A new stream as a blend of all streams in the list.
+     */
+    public static <T> Stream<T> streamFlattenByLong(
+        final List<Stream<T>> streams,
+        final ToLongFunction<? super T> key)
+    {
+        final Spliterator<T> spltr = new KeyedFlatSpliter<>(streams,
+            sources -> new KeyedMergeHeap.OfLong<>(sources, key));
+        Stream<T> result = StreamSupport.stream(spltr, false);
+        for (final Stream<T> stream : streams) {
+            result = result.onClose(stream::close);
+        }
+        return result;
+    }
+
+    /**
+     * A {@link Stream} pulling from a {@link List} of similar streams, each
+     * sorted by a {@link Comparable} key, as
+     * {@code streamFlatten(streams, Comparator.comparing(key))} does, but
+     * taking each element's key once, when it comes to the head of its
+     * stream, and keeping it for the comparisons to follow.
+     * Equal keys go to the stream listed first.
+     * Closing the result closes every stream. Like
+     * {@link #streamFlattenByLong(List, ToLongFunction)}, this pays off over
+     * many streams, or when taking the key is cheap next to comparing.
+     *
+     * @param <T>     Shared stream item type
+     * @param <K>     Key type
+     * @param streams List of streams sorted by {@code key}
+     * @param key     Key the streams are sorted by
+     * @return        A new stream as a blend of all streams in the list.
+     * @see #streamFlattenByLong(List, ToLongFunction)
+     */
+    public static <T, K extends Comparable<? super K>> Stream<T>
+        streamFlattenBy(
+            final List<Stream<T>> streams,
+            final Function<? super T, ? extends K> key)
+    {
+        final Spliterator<T> spltr = new KeyedFlatSpliter<>(streams,
+            sources -> new KeyedMergeHeap.OfComparable<>(sources, key));
+        Stream<T> result = StreamSupport.stream(spltr, false);
+        for (final Stream<T> stream : streams) {
+            result = result.onClose(stream::close);
+        }
+        return result;
+    }
+
+    /**
+     * The merge of sorted sources from {@code from} on, as
+     * {@link #streamFlatten(List, Comparator)} would give it after dropping
+     * every element before {@code from}, with each source moved straight to
+     * {@code from} by binary search instead. Transactions since a date
+     * across hundreds of sorted files, for instance, cost a search per file
+     * rather than a read of every earlier transaction.
+     * Closing the result closes every source.
+     *
+     * @param <T>     Shared item type
+     * @param sources Sources sorted by {@code comp}
+     * @param comp    The order of the sources, the same as they seek by
+     * @param from    Where to start; only its sort key matters
+     * @return        The elements of every source not before {@code from},
+     *                merged
+     * @see SeekableMerge to seek again during the merge
+     */
+    public static <T> Stream<T> streamFlattenFrom(
+        final List<? extends SeekableSource<T>> sources,
+        final Comparator<? super T> comp,
+        final T from)
+    {
+        final SeekableMerge<T> merge = new SeekableMerge<>(sources, comp);
+        merge.seek(from);
+        final Stream<T> result = merge.stream();
+        return result;
+    }
+
+    /**
+     * Merge sorted streams as {@link #streamFlatten(List, Comparator)}
+     * does, collapsing every set of equal elements, within a stream or
+     * across streams, into the one from the first listed stream.
+     * List the streams from highest priority to lowest, newest data
+     * first for instance, for a compaction where the newest copy wins.
+     *
+     * @param <T>     Shared stream item type
+     * @param streams List of sorted streams, highest priority first
+     * @param comp    Comparator ordering the streams; equal elements are
+     *                collapsed
+     * @return        The merge, with one element of each set of equals
+     * @see #mergeCollapse(List, Comparator, BinaryOperator)
+     */
+    public static <T> Stream<T> mergeCollapse(
+        final List<Stream<T>> streams,
+        final Comparator<? super T> comp)
+    {
+        return mergeCollapse(streams, comp, (first, later) -> first);
+    }
+
+    /**
+     * Merge sorted streams as {@link #streamFlatten(List, Comparator)}
+     * does, combining every set of equal elements, within a stream or
+     * across streams, into one, in a single pass holding only the heads
+     * of the streams. This is a streaming replacement for merging, then
+     * grouping and reducing the groups.
+     *
+     * <p>Equal elements are combined in list order, those of the first
+     * listed stream first, each stream's in its own order:
+     * {@code combiner(combiner(a, b), c)}.
+     * Closing the result closes every stream.
+     *
+     * @param <T>      Shared stream item type
+     * @param streams  List of sorted streams
+     * @param comp     Comparator ordering the streams; equal elements are
+     *                 combined
+     * @param combiner Combines an element, or the combination so far, with
+     *                 the next equal element
+     * @return         The merge, with one element of each set of equals
+     */
+    public static <T> Stream<T> mergeCollapse(
+        final List<Stream<T>> streams,
+        final Comparator<? super T> comp,
+        final BinaryOperator<T> combiner)
+    {
+        final Spliterator<T> spltr =
+            new CollapseSpliter<>(streams, comp, combiner);
+        Stream<T> result = StreamSupport.stream(spltr, false);
+        for (final Stream<T> stream : streams) {
+            result = result.onClose(stream::close);
+        }
+        return result;
+    }
+
+    /**
+     * A {@link Stream} pulling from a {@link List} of similar streams, as
+     * {@link #streamFlatten(List, Comparator)} does, ending after
+     * {@code limit} elements.
+     * This is {@code streamFlatten(streams, comp).limit(limit)}, knowing
+     * the limit up front: once every stream's head is read, a stream whose
+     * head is beyond the {@code limit}-th least head can't give any of the
+     * first {@code limit} elements, so it is left out of the merge, read
+     * no further, and closed. No stream is read until the result is.
+     * Closing the result closes every stream.
+     *
+     * @param <T>     Shared stream item type
+     * @param streams List of similar streams
+     * @param comp    Comparator comparing the top elements among all streams
+     * @param limit   Number of elements to take, at least 0
+     * @return        The first {@code limit} elements of the blend of all
+     *                streams in the list
+     */
+    public static <T> Stream<T> streamFlatten(
+        final List<Stream<T>> streams,
+        final Comparator<? super T> comp,
+        final long limit)
+    {
+        if (limit < 0L) {
+            throw new IllegalArgumentException("limit < 0: " + limit);
+        }
+        Stream<T> result = StreamSupport.stream(
+            () -> limitedMerge(streams, comp, limit),
+            Spliterator.ORDERED, false)
+            .limit(limit);
+        for (final Stream<T> stream : streams) {
+            result = result.onClose(stream::close);
+        }
+        return result;
+    }
+
+    /**
+     * The merge of the streams whose heads are among the {@code limit}
+     * least heads, ties included. Empty streams, and streams left out, are
+     * closed here.
+     */
+    private static <T> Spliterator<T> limitedMerge(
+        final List<Stream<T>> streams,
+        final Comparator<? super T> comp,
+        final long limit)
+    {
+        // the streams with a head, and their heads
+        final List<Stream<T>> owners = new ArrayList<>();
+        final List<PeekingIterator<T>> live = new ArrayList<>();
+        if (limit > 0L) {
+            for (final Stream<T> stream : streams) {
+                final PeekingIterator<T> it =
+                    PeekingIterator.of(stream.iterator());
+                if (it.hasNext()) {
+                    owners.add(stream);
+                    live.add(it);
+                } else {
+                    stream.close();
+                }
+            }
+        }
+        final boolean cutting = limit > 0L && limit < live.size();
+        final T cut = cutting
+            ? live.stream()
+                .map(PeekingIterator::peek)
+                .collect(topK(comp, (int) limit))
+                .get((int) limit - 1)
+            : null;
+        final List<Stream<T>> kept = new ArrayList<>(live.size());
+        for (int i = 0; i < live.size(); i++) {
+            final PeekingIterator<T> it = live.get(i);
+            if (cutting && comp.compare(it.peek(), cut) > 0) {
+                owners.get(i).close();
+            } else {
+                kept.add(StreamSupport.stream(
+                    Spliterators.spliteratorUnknownSize(it,
+                        Spliterator.ORDERED),
+                    false));
+            }
+        }
+        return new FlatSpliter<>(kept, comp);
+    }
+
+    /**
+     * Mix streams fairly, taking an item from each stream in turn, without
+     * ordering them.
+     * Each item costs {@code O(1)}, however many streams there are; a
+     * stream that runs out drops out of the rotation. The size is known
+     * when every stream's is. Closing the result closes every stream.
+     *
+     * @param <T>     Shared stream item type
+     * @param streams Streams to mix, in turn order
+     * @return        The items of every stream, in turns
+     * @see #interleave(List, int[])
+     */
+    public static <T> Stream<T> interleave(final List<Stream<T>> streams) {
+        final int[] weights = new int[streams.size()];
+        Arrays.fill(weights, 1);
+        return interleave(streams, weights);
+    }
+
+    /**
+     * Mix streams by weight, taking up to {@code weights[i]} consecutive
+     * items from stream {@code i} on its turn, then moving on to the next
+     * stream. Each item costs {@code O(1)}; a stream that runs out drops
+     * out of the rotation, the others keeping their weights. Closing the
+     * result closes every stream.
+     *
+     * @param <T>     Shared stream item type
+     * @param streams Streams to mix, in turn order
+     * @param weights Items to take from each stream per turn, each at
+     *                least 1, one per stream
+     * @return        The items of every stream, in weighted turns
+     */
+    public static <T> Stream<T> interleave(
+        final List<Stream<T>> streams,
+        final int[] weights)
+    {
+        final Spliterator<T> spltr = new InterleaveSpliter<>(
+            streams.stream()
+                .map(Stream::spliterator)
+                .collect(Collectors.toList()),
+            weights);
+        Stream<T> result = StreamSupport.stream(spltr, false);
+        for (final Stream<T> stream : streams) {
+            result = result.onClose(stream::close);
+        }
+        return result;
+    }
+
+    /**
+     * Mix streams where order doesn't matter, as a parallel stream in
+     * which each stream is a split of its own, further split as far as it
+     * can be, so that a fan-in of many streams is spread over the cores.
+     * Closing the result closes every stream.
+     *
+     * @param <T>     Shared stream item type
+     * @param streams Streams to mix
+     * @return        The items of every stream, in no particular order
+     */
+    public static <T> Stream<T> interleaveUnordered(
+        final List<Stream<T>> streams)
+    {
+        final Spliterator<T> spltr = new ConcatSpliter<>(streams.stream()
+            .map(Stream::spliterator)
+            .collect(Collectors.toCollection(ArrayDeque::new)));
+        Stream<T> result = StreamSupport.stream(spltr, true).unordered();
+        for (final Stream<T> stream : streams) {
+            result = result.onClose(stream::close);
+        }
+        return result;
+    }
+
+    /**
+     * Map a stream's elements concurrently, on virtual threads when the
+     * JVM supports them and daemon threads otherwise, keeping their order.
+     *
+     * @param <T>         Source item type
+     * @param <R>         Mapped item type
+     * @param stream      Items to map
+     * @param fn          The mapping, a slow call such as a lookup
+     * @param maxInFlight Mappings to have under way at once, at least 1
+     * @return            The mapped items, in the order of {@code stream}
+     * @see #mapAsync(Stream, Function, int, Executor)
+     */
+    public static <T, R> Stream<R> mapAsync(
+        final Stream<T> stream,
+        final Function<? super T, ? extends R> fn,
+        final int maxInFlight)
+    {
+        final ThreadFactory threads = VirtualThreads.factory();
+        return mapAsync(stream, fn, maxInFlight,
+            task -> threads.newThread(task).start());
+    }
+
+    /**
+     * Map a stream's elements concurrently on {@code executor}, keeping
+     * their order. At most {@code maxInFlight} mappings are running, or
+     * done and waiting on an older one, at any time, and the source is only
+     * read as the result is.
+     * Use this for mappings that wait on I/O, so their waits overlap.
+     *
+     * <p>The first mapping to fail fails the result with its exception, once
+     * noticed, cancelling the other mappings. Closing the result cancels the
+     * mappings still running, interrupting them, and closes {@code stream};
+     * use try-with-resources when the result may not be read to the end.
+     * The result is sequential.
+     *
+     * @param <T>         Source item type
+     * @param <R>         Mapped item type
+     * @param stream      Items to map
+     * @param fn          The mapping, a slow call such as a lookup
+     * @param maxInFlight Mappings to have under way at once, at least 1
+     * @param executor    Runs the mappings
+     * @return            The mapped items, in the order of {@code stream}
+     */
+    public static <T, R> Stream<R> mapAsync(
+        final Stream<T> stream,
+        final Function<? super T, ? extends R> fn,
+        final int maxInFlight,
+        final Executor executor)
+    {
+        final MapAsyncSpliter<T, R> spltr = new MapAsyncSpliter<>(
+            stream.iterator(), fn, maxInFlight, executor);
+        final Stream<R> result = StreamSupport.stream(spltr, false)
+            .onClose(spltr::close)
+            .onClose(stream::close);
+        return result;
+    }
+
+    /**
+     * A {@link Stream} pulling from a {@link List} of similar streams, as
+     * {@link #streamFlatten(List, Comparator)} does, counting into
+     * {@code metrics}: the elements taken from each stream, the time spent
+     * waiting on each stream, how long each stream's head has waited to be
+     * taken, and the comparisons made. {@code metrics} needs a source for
+     * every stream, indexed by list position.
+     *
+     * <p>The counting costs four clock reads per element, two around each
+     * of the stream's {@code hasNext} and {@code next}, a few uncontended
+     * counter updates, and one per comparison. The merge no longer splits
+     * for parallel use. Closing the result closes the
+     * metrics.
+     *
+     * @param <T>     Shared stream item type
+     * @param streams List of similar streams
+     * @param comp    Comparator comparing the top elements among all streams
+     * @param metrics Where to count
+     * @return        A new stream as a blend of all streams in the list.
+     * @see MetricsRegistry#metrics(String, int)
+     */
+    public static <T> Stream<T> streamFlatten(
+        final List<Stream<T>> streams,
+        final Comparator<? super T> comp,
+        final StreamMetrics metrics)
+    {
+        if (streams.size() > metrics.sourceCount()) {
+            throw new IllegalArgumentException(streams.size()
+                + " streams for " + metrics.sourceCount() + " sources");
+        }
+        final List<Stream<T>> metered = new ArrayList<>(streams.size());
+        for (int i = 0; i < streams.size(); i++) {
+            metered.add(instrument(streams.get(i), metrics, i));
+        }
+        final Stream<T> result =
+            streamFlatten(metered, metrics.counting(comp))
+            .onClose(metrics::close);
+        return result;
+    }
+
+    /**
+     * Count the elements taken from a stream, and the time spent waiting
+     * for them, as source {@code index} of {@code metrics}.
+     * Use this on the inputs of any operator to find which one is holding
+     * it up, along with {@link StreamMetrics#counting(Comparator)} for its
+     * comparator.
+     *
+     * <p>The result is sequential and closing it closes {@code stream}.
+     *
+     * @param <T>     Stream item type
+     * @param stream  Items to count
+     * @param metrics Where to count
+     * @param index   Index of the source in {@code metrics}
+     * @return        The items of {@code stream}
+     */
+    public static <T> Stream<T> instrument(
+        final Stream<T> stream,
+        final StreamMetrics metrics,
+        final int index)
+    {
+        final Spliterator<T> spltr = Spliterators.spliteratorUnknownSize(
+            new MeteredIterator<>(stream.iterator(), metrics, index),
+            Spliterator.ORDERED);
+        final Stream<T> result = StreamSupport.stream(spltr, false)
+            .onClose(stream::close);
+        return result;
+    }
+
+    /**
+     * A {@link Stream} pulling from a {@link List} of similar streams, as
+     * {@link #streamFlatten(List, Comparator)} does, while every stream is
+     * read ahead on its own background thread into a buffer of up to
+     * {@code depth} elements.
+     * Use this when the streams are slow to produce, reading files or
+     * sockets for instance, so their I/O overlaps instead of one stalled
+     * stream stalling the whole merge.
+     *
+     * <p>The threads are virtual threads when the JVM supports them,
+     * daemon threads otherwise.
+     *
+     * @param <T>     Shared stream item type
+     * @param streams List of similar streams
+     * @param comp    Comparator comparing the top elements among all streams
+     * @param depth   Number of elements to read ahead per stream, at least 1
+     * @return        A new stream as a blend of all streams in the list.
+     * @see #streamFlattenPrefetch(List, Comparator, int, ThreadFactory)
+     */
+    public static <T> Stream<T> streamFlattenPrefetch(
+        final List<Stream<T>> streams,
+        final Comparator<? super T> comp,
+        final int depth)
+    {
+        return streamFlattenPrefetch(streams, comp, depth,
+            VirtualThreads.factory());
+    }
+
+    /**
+     * A {@link Stream} pulling from a {@link List} of similar streams, as
+     * {@link #streamFlatten(List, Comparator)} does, while every stream is
+     * read ahead on its own thread into a buffer of up to {@code depth}
+     * elements.
+     *
+     * <p>The reading threads start when the first element is requested.
+     * An exception thrown by one of the streams is rethrown to the consumer
+     * once the merge has used up that stream's elements before it.
+     * Closing the returned stream cancels the reading threads, and each
+     * thread closes its own stream when it is done. Use try-with-resources
+     * when the merge may not be read to the end.
+     *
+     * @param <T>     Shared stream item type
+     * @param streams List of similar streams
+     * @param comp    Comparator comparing the top elements among all streams
+     * @param depth   Number of elements to read ahead per stream, at least 1
+     * @param threadFactory makes the reading threads
+     * @return        A new stream as a blend of all streams in the list.
+     */
+    public static <T> Stream<T> streamFlattenPrefetch(
+        final List<Stream<T>> streams,
+        final Comparator<? super T> comp,
+        final int depth,
+        final ThreadFactory threadFactory)
+    {
+        final Prefetcher<T> prefetcher =
+            new Prefetcher<>(streams, depth, threadFactory);
+        final List<Stream<T>> buffered = prefetcher.iterators().stream()
+            .map(it -> Spliterators.spliteratorUnknownSize(it,
+                Spliterator.ORDERED))
+            .map(sp -> StreamSupport.stream(sp, false))
+            .collect(Collectors.toList());
+        final Spliterator<T> spltr = new FlatSpliter<>(buffered, comp);
+        final Stream<T> result = StreamSupport.stream(spltr, false)
+            .onClose(prefetcher::close);
+        return result;
+    }
+
+    /**
+     * The elements of the first stream that have an equal element in the
+     * second stream, both streams being SORTED by the same
+     * {@link Comparator}. This is a streaming, single pass replacement for
+     * filtering against a {@code Set} holding the whole second stream.
+     *
+     * <p>Duplicates in the first stream are all kept. Runs in
+     * {@code O(n + m)} time and constant memory. Closing the result closes
+     * both streams.
+     *
+     * @param <T>    Shared stream item type
+     * @param first  Stream of candidate elements, sorted by {@code comp}
+     * @param second Stream of elements to match, sorted by {@code comp}
+     * @param comp   Order of both streams, and the element equality
+     * @return       The matching elements of {@code first}, in order
+     */
+    public static <T> Stream<T> intersect(
+        final Stream<T> first,
+        final Stream<T> second,
+        final Comparator<? super T> comp)
+    {
+        return sortedSetOp(first, second, comp, SortedSetSpliter.Op.INTERSECT);
+    }
+
+    /**
+     * The elements of the first stream that have no equal element in the
+     * second stream, both streams being SORTED by the same
+     * {@link Comparator}.
+     *
+     * <p>Duplicates in the first stream are all kept. Runs in
+     * {@code O(n + m)} time and constant memory. Closing the result closes
+     * both streams.
+     *
+     * @param <T>    Shared stream item type
+     * @param first  Stream of candidate elements, sorted by {@code comp}
+     * @param second Stream of elements to exclude, sorted by {@code comp}
+     * @param comp   Order of both streams, and the element equality
+     * @return       The unmatched elements of {@code first}, in order
+     */
+    public static <T> Stream<T> difference(
+        final Stream<T> first,
+        final Stream<T> second,
+        final Comparator<? super T> comp)
+    {
+        return sortedSetOp(first, second,
+            comp, SortedSetSpliter.Op.DIFFERENCE);
+    }
+
+    /**
+     * The distinct elements of two streams SORTED by the same
+     * {@link Comparator}. Of equal elements, only the first one is kept,
+     * favoring the first stream.
+     *
+     * <p>Runs in {@code O(n + m)} time and constant memory. Closing the
+     * result closes both streams.
+     *
+     * @param <T>    Shared stream item type
+     * @param first  A stream sorted by {@code comp}
+     * @param second Another stream sorted by {@code comp}
+     * @param comp   Order of both streams, and the element equality
+     * @return       The distinct elements of both streams, in order
+     */
+    public static <T> Stream<T> union(
+        final Stream<T> first,
+        final Stream<T> second,
+        final Comparator<? super T> comp)
+    {
+        return sortedSetOp(first, second, comp, SortedSetSpliter.Op.UNION);
+    }
+
+    private static <T> Stream<T> sortedSetOp(
+        final Stream<T> first,
+        final Stream<T> second,
+        final Comparator<? super T> comp,
+        final SortedSetSpliter.Op op)
+    {
+        final Spliterator<T> spltr = new SortedSetSpliter<>(
+            PeekingIterator.of(first.iterator()),
+            PeekingIterator.of(second.iterator()),
+            comp, op);
+        final Stream<T> result = StreamSupport.stream(spltr, false)
+            .onClose(first::close)
+            .onClose(second::close);
+        return result;
+    }
+
+    /**
+     * Inner join of two streams SORTED by a common key, in a single pass.
+     * Each left element is joined with every right element of an equal key;
+     * left elements without any are dropped.
+     *
+     * <p>Runs in {@code O(n + m)} time plus the size of the output. Memory is
+     * bounded by the largest group of right elements sharing a key, so it is
+     * constant when the right keys are unique. Closing the result closes both
+     * streams.
+     *
+     * @param <L>      Left stream item type
+     * @param <R>      Right stream item type
+     * @param <K>      Join key type
+     * @param <O>      Joined item type
+     * @param left     Left stream, sorted by key
+     * @param right    Right stream, sorted by key
+     * @param leftKey  Key of a left element
+     * @param rightKey Key of a right element
+     * @param keyComp  Key order of both streams, and the key equality
+     * @param joiner   Joins a left and a right element
+     * @return         The joined elements, in key order
+     */
+    public static <L, R, K, O> Stream<O> innerMergeJoin(
+        final Stream<L> left,
+        final Stream<R> right,
+        final Function<? super L, ? extends K> leftKey,
+        final Function<? super R, ? extends K> rightKey,
+        final Comparator<? super K> keyComp,
+        final BiFunction<? super L, ? super R, ? extends O> joiner)
+    {
+        return mergeJoin(left, right, leftKey, rightKey, keyComp, joiner,
+            false);
+    }
+
+    /**
+     * Left outer join of two streams SORTED by a common key, in a single
+     * pass. Each left element is joined with every right element of an equal
+     * key, or with {@code null} when there are none.
+     *
+     * <p>Runs in {@code O(n + m)} time plus the size of the output. Memory is
+     * bounded by the largest group of right elements sharing a key. Closing
+     * the result closes both streams.
+     *
+     * @param <L>      Left stream item type
+     * @param <R>      Right stream item type
+     * @param <K>      Join key type
+     * @param <O>      Joined item type
+     * @param left     Left stream, sorted by key
+     * @param right    Right stream, sorted by key
+     * @param leftKey  Key of a left element
+     * @param rightKey Key of a right element
+     * @param keyComp  Key order of both streams, and the key equality
+     * @param joiner   Joins a left and a right element, which may be null
+     * @return         The joined elements, in key order
+     */
+    public static <L, R, K, O> Stream<O> leftMergeJoin(
+        final Stream<L> left,
+        final Stream<R> right,
+        final Function<? super L, ? extends K> leftKey,
+        final Function<? super R, ? extends K> rightKey,
+        final Comparator<? super K> keyComp,
+        final BiFunction<? super L, ? super R, ? extends O> joiner)
+    {
+        return mergeJoin(left, right, leftKey, rightKey, keyComp, joiner,
+            true);
+    }
+
+    private static <L, R, K, O> Stream<O> mergeJoin(
+        final Stream<L> left,
+        final Stream<R> right,
+        final Function<? super L, ? extends K> leftKey,
+        final Function<? super R, ? extends K> rightKey,
+        final Comparator<? super K> keyComp,
+        final BiFunction<? super L, ? super R, ? extends O> joiner,
+        final boolean outer)
+    {
+        final Spliterator<O> spltr = new MergeJoinSpliter<>(
+            PeekingIterator.of(left.iterator()),
+            PeekingIterator.of(right.iterator()),
+            leftKey, rightKey, keyComp, joiner, outer);
+        final Stream<O> result = StreamSupport.stream(spltr, false)
+            .onClose(left::close)
+            .onClose(right::close);
+        return result;
+    }
+
+    /**
+     * Group the adjacent items of a stream sharing a key, collecting each
+     * group with a {@link Collector}.
+     * A group is passed along as soon as the next item's key differs, so
+     * only one group is held at a time.
+     *
+     * <p>On a stream sorted by key, such as the result of
+     * {@link #streamFlatten(List, Comparator)}, this is a streaming
+     * {@link Collectors#groupingBy(Function, Collector)}: results begin
+     * before the stream ends, and memory is bounded by the largest group.
+     * Keys are compared with {@link Object#equals(Object)}, and a key
+     * recurring after another key starts a new group.
+     *
+     * @param <T>        Stream item type
+     * @param <K>        Group key type
+     * @param <A>        Collector accumulation type
+     * @param <R>        Group result type
+     * @param stream     Items to group, sorted or at least clustered by key
+     * @param keyFn      Key of an item
+     * @param downstream Collects the items of a group
+     * @return           Each group's key and collected result, in the order
+     *                   the groups appear
+     */
+    public static <T, K, A, R> Stream<Map.Entry<K, R>> groupAdjacent(
+        final Stream<T> stream,
+        final Function<? super T, ? extends K> keyFn,
+        final Collector<? super T, A, R> downstream)
+    {
+        final Spliterator<Map.Entry<K, R>> spltr =
+            new GroupSpliter.Collecting<>(
+                PeekingIterator.of(stream.iterator()), keyFn, downstream);
+        final Stream<Map.Entry<K, R>> result =
+            StreamSupport.stream(spltr, false)
+            .onClose(stream::close);
+        return result;
+    }
+
+    /**
+     * Group the adjacent items of a stream sharing a key, reducing each
+     * group to a value.
+     * Each item is mapped and folded into its group's running value with
+     * {@code op}, so no group's items are ever held.
+     *
+     * @param <T>    Stream item type
+     * @param <K>    Group key type
+     * @param <R>    Group value type
+     * @param stream Items to group, sorted or at least clustered by key
+     * @param keyFn  Key of an item
+     * @param mapper Value of a single item
+     * @param op     Combines two values of the same group; associative
+     * @return       Each group's key and reduced value, in the order the
+     *               groups appear
+     * @see #groupAdjacent(Stream, Function, Collector)
+     */
+    public static <T, K, R> Stream<Map.Entry<K, R>> reduceAdjacent(
+        final Stream<T> stream,
+        final Function<? super T, ? extends K> keyFn,
+        final Function<? super T, ? extends R> mapper,
+        final BinaryOperator<R> op)
+    {
+        final Spliterator<Map.Entry<K, R>> spltr =
+            new GroupSpliter.Reducing<>(
+                PeekingIterator.of(stream.iterator()), keyFn, mapper, op);
+        final Stream<Map.Entry<K, R>> result =
+            StreamSupport.stream(spltr, false)
+            .onClose(stream::close);
+        return result;
+    }
+
+    /**
+     * Sort a stream that may not fit in memory, spilling sorted runs to
+     * temporary files in the default temporary-file directory.
+     *
+     * @param <T>          Stream item type
+     * @param stream       Items to sort
+     * @param comp         The sort order
+     * @param serializer   Writes and reads items of the spilled runs
+     * @param memoryBudget Serialized bytes of items to hold in memory at once
+     * @return             The items of {@code stream}, sorted
+     * @see #sortedExternal(Stream, Comparator, RecordSerializer, long, Path)
+     */
+    public static <T> Stream<T> sortedExternal(
+        final Stream<T> stream,
+        final Comparator<? super T> comp,
+        final RecordSerializer<T> serializer,
+        final long memoryBudget)
+    {
+        return sortedExternal(stream, comp, serializer, memoryBudget, null);
+    }
+
+    /**
+     * Sort a stream that may not fit in memory.
+     * The stream is read in chunks of about {@code memoryBudget} serialized
+     * bytes. Each chunk is sorted and spilled to a temporary file as a
+     * sorted run, and the runs are merged lazily as the result is read, each
+     * run read through a file channel a window at a time. A stream fitting
+     * in a single chunk is sorted in memory without any files.
+     *
+     * <p>Nothing is read until the first result is requested, at which point
+     * the whole stream is read and spilled. Closing the result closes and
+     * deletes the temporary files, freeing their disk space at once, and
+     * closes {@code stream}, so use try-with-resources. Once runs are
+     * spilled, the result is read sequentially even when parallel; the
+     * merge of the runs doesn't split.
+     *
+     * @param <T>          Stream item type
+     * @param stream       Items to sort
+     * @param comp         The sort order
+     * @param serializer   Writes and reads items of the spilled runs
+     * @param memoryBudget Serialized bytes of items to hold in memory at once;
+     *                     the heap used is a multiple of it, depending on the
+     *                     items
+     * @param tempDir      Where to put the run files, or {@code null} for the
+     *                     default temporary-file directory
+     * @return             The items of {@code stream}, sorted
+     * @throws java.io.UncheckedIOException when a run file can't be written
+     *                     or read, as the result is read
+     */
+    public static <T> Stream<T> sortedExternal(
+        final Stream<T> stream,
+        final Comparator<? super T> comp,
+        final RecordSerializer<T> serializer,
+        final long memoryBudget,
+        final Path tempDir)
+    {
+        final ExternalSortSpliter<T> spltr = new ExternalSortSpliter<>(
+            stream.spliterator(), comp, serializer, memoryBudget, tempDir);
+        final Stream<T> result = StreamSupport.stream(spltr, false)
+            .onClose(spltr::close)
+            .onClose(stream::close);
+        return result;
+    }
+
+    /**
+     * Cache a stream so that it can be read any number of times, by
+     * readers each getting a {@link Stream} of their own from
+     * {@link CachedStream#stream()}, such as to merge one expensive source
+     * with several partners. The stream is read once, lazily, as the
+     * readers advance, and buffered in memory.
+     *
+     * @param <T>    Stream item type
+     * @param stream Items to cache
+     * @return       The cache; close it to close {@code stream}
+     * @see CachedStream
+     */
+    public static <T> CachedStream<T> cached(final Stream<T> stream) {
+        return new CachedStream<>(stream, null, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Cache a stream so that it can be read any number of times, as
+     * {@link #cached(Stream)} does, spilling the oldest buffered items to a
+     * temporary file in the default temporary-file directory whenever the
+     * buffer holds more than {@code memoryBudget} serialized bytes.
+     *
+     * @param <T>          Stream item type
+     * @param stream       Items to cache
+     * @param serializer   Writes and reads the spilled items
+     * @param memoryBudget Serialized bytes of items to hold in memory
+     * @return             The cache; close it to close {@code stream} and
+     *                     delete the spill file
+     * @see #cached(Stream, RecordSerializer, long, Path)
+     */
+    public static <T> CachedStream<T> cached(
+        final Stream<T> stream,
+        final RecordSerializer<T> serializer,
+        final long memoryBudget)
+    {
+        return cached(stream, serializer, memoryBudget, null);
+    }
+
+    /**
+     * Cache a stream so that it can be read any number of times, as
+     * {@link #cached(Stream)} does, spilling the oldest buffered items to a
+     * temporary file whenever the buffer holds more than
+     * {@code memoryBudget} serialized bytes. Readers reaching spilled items
+     * read them back from the file.
+     *
+     * @param <T>          Stream item type
+     * @param stream       Items to cache
+     * @param serializer   Writes and reads the spilled items
+     * @param memoryBudget Serialized bytes of items to hold in memory
+     * @param tempDir      Where to put the spill file, or {@code null} for
+     *                     the default temporary-file directory
+     * @return             The cache; close it to close {@code stream} and
+     *                     delete the spill file
+     * @throws java.io.UncheckedIOException when the spill file can't be
+     *                     written or read, as the cache is read
+     */
+    public static <T> CachedStream<T> cached(
+        final Stream<T> stream,
+        final RecordSerializer<T> serializer,
+        final long memoryBudget,
+        final Path tempDir)
+    {
+        return new CachedStream<>(stream,
+            Objects.requireNonNull(serializer), memoryBudget, tempDir);
+    }
+
+    /**
+     * Merge sorted files of fixed-width records into a channel, by the
+     * {@code long} key of each record, without turning a record into an
+     * object. Records of equal keys keep the order of the file list.
+     *
+     * <p>The files are memory-mapped a window at a time, so they may be far
+     * larger than the heap, and keys are compared in place. Records go to
+     * {@code out} in runs, straight from the mapped files for long runs or
+     * gathered in a direct buffer for short ones. The channel is not
+     * closed.
+     *
+     * @param inputs Files of records sorted by key, each a whole number of
+     *               records long
+     * @param layout The layout of the records of every file
+     * @param out    Where to write the merged records, a file channel for
+     *               instance
+     * @return       The number of records merged
+     * @throws java.io.UncheckedIOException when a file can't be read or the
+     *               channel written
+     */
+    public static long mergeRecordFiles(
+        final List<Path> inputs,
+        final FixedRecordLayout layout,
+        final WritableByteChannel out)
+    {
+        final RecordFileMerge.ChannelSink sink =
+            new RecordFileMerge.ChannelSink(out);
+        final long result = mergeRecordFiles(inputs, layout, sink);
+        try {
+            sink.flush();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+
+    /**
+     * Merge sorted files of fixed-width records by the {@code long} key of
+     * each record, passing the records on as buffer views of the mapped
+     * files.
+     * Each view is read-only, in the layout's byte order, and its remaining
+     * bytes are one or more whole records in merge order. A view is reused
+     * for the next run, so take what is needed from it before returning.
+     *
+     * @param inputs Files of records sorted by key, each a whole number of
+     *               records long
+     * @param layout The layout of the records of every file
+     * @param sink   Takes the runs of merged records
+     * @return       The number of records merged
+     * @throws java.io.UncheckedIOException when a file can't be read
+     * @see #mergeRecordFiles(List, FixedRecordLayout, WritableByteChannel)
+     */
+    public static long mergeRecordFiles(
+        final List<Path> inputs,
+        final FixedRecordLayout layout,
+        final Consumer<? super ByteBuffer> sink)
+    {
+        final long result;
+        try (RecordFileMerge merge = new RecordFileMerge(inputs, layout)) {
+            result = merge.merge(sink);
+        }
+        return result;
+    }
+
+    /**
+     * A {@link Collector} of the {@code k} least items by a comparator, in
+     * order, as {@code sorted(comp).limit(k)} gives, without sorting or
+     * holding the whole stream: the items are offered to a heap holding at
+     * most {@code k} of them, and an item beyond the {@code k} least so far
+     * costs a single comparison. Parallel pieces collect into heaps of
+     * their own, which are then combined. Equal items keep their encounter
+     * order, parallel or not, as they would through a stable sort.
+     *
+     * @param <T>  Stream item type
+     * @param comp Orders the items, least first
+     * @param k    Number of items to keep, at least 0
+     * @return     A collector of a list of the {@code k} least items, or
+     *             of every item when there are fewer
+     */
+    public static <T> Collector<T, ?, List<T>> topK(
+        final Comparator<? super T> comp,
+        final int k)
+    {
+        return Collector.<T, TopK.OfRef<T>, List<T>>of(
+            () -> new TopK.OfRef<>(comp, k),
+            TopK.OfRef::add,
+            TopK.OfRef::combine,
+            TopK.OfRef::toSortedList);
+    }
+
+    /**
+     * The {@code k} least values of an {@link IntStream}, in order, without
+     * sorting the stream.
+     *
+     * @param stream Values to choose from
+     * @param k      Number of values to keep, at least 0
+     * @return       The {@code k} least values, or all of them when there
+     *               are fewer
+     * @see #topK(Comparator, int)
+     */
+    public static int[] topKInt(final IntStream stream, final int k) {
+        return topKInt(stream, k, Integer::compare);
+    }
+
+    /**
+     * The {@code k} least values of an {@link IntStream} by a comparison,
+     * in order, without sorting the stream or boxing any value.
+     *
+     * @param stream Values to choose from
+     * @param k      Number of values to keep, at least 0
+     * @param comp   Compares two values as
+     *               {@link Integer#compare(int, int)} does; values it
+     *               finds equal come in no particular order
+     * @return       The {@code k} least values, or all of them when there
+     *               are fewer
+     * @see #topK(Comparator, int)
+     */
+    public static int[] topKInt(
+        final IntStream stream,
+        final int k,
+        final IntBinaryOperator comp)
+    {
+        return stream.collect(() -> new TopK.OfInt(comp, k),
+            TopK.OfInt::add, TopK.OfInt::combine)
+            .toSortedArray();
+    }
+
+    /**
+     * The {@code k} least values of a {@link LongStream}, in order, without
+     * sorting the stream.
+     *
+     * @param stream Values to choose from
+     * @param k      Number of values to keep, at least 0
+     * @return       The {@code k} least values, or all of them when there
+     *               are fewer
+     * @see #topK(Comparator, int)
+     */
+    public static long[] topKLong(final LongStream stream, final int k) {
+        return topKLong(stream, k, Long::compare);
+    }
+
+    /**
+     * The {@code k} least values of a {@link LongStream} by a comparison,
+     * in order, without sorting the stream or boxing any value.
+     *
+     * @param stream Values to choose from
+     * @param k      Number of values to keep, at least 0
+     * @param comp   Compares two values as
+     *               {@link Long#compare(long, long)} does; values it
+     *               finds equal come in no particular order
+     * @return       The {@code k} least values, or all of them when there
+     *               are fewer
+     * @see #topK(Comparator, int)
+     */
+    public static long[] topKLong(
+        final LongStream stream,
+        final int k,
+        final LongBinaryOperator comp)
+    {
+        return stream.collect(() -> new TopK.OfLong(comp, k),
+            TopK.OfLong::add, TopK.OfLong::combine)
+            .toSortedArray();
+    }
+
+    /**
+     * The {@code k} least values of a {@link DoubleStream}, in order,
+     * without sorting the stream.
+     *
+     * @param stream Values to choose from
+     * @param k      Number of values to keep, at least 0
+     * @return       The {@code k} least values, or all of them when there
+     *               are fewer
+     * @see #topK(Comparator, int)
+     */
+    public static double[] topKDouble(final DoubleStream stream, final int k)
+    {
+        return topKDouble(stream, k, Double::compare);
+    }
+
+    /**
+     * The {@code k} least values of a {@link DoubleStream} by a comparison,
+     * in order, without sorting the stream or boxing any value.
+     *
+     * @param stream Values to choose from
+     * @param k      Number of values to keep, at least 0
+     * @param comp   Compares two values as
+     *               {@link Double#compare(double, double)} does; values it
+     *               finds equal come in no particular order
+     * @return       The {@code k} least values, or all of them when there
+     *               are fewer
+     * @see #topK(Comparator, int)
+     */
+    public static double[] topKDouble(
+        final DoubleStream stream,
+        final int k,
+        final DoubleBinaryOperator comp)
+    {
+        return stream.collect(() -> new TopK.OfDouble(comp, k),
+            TopK.OfDouble::add, TopK.OfDouble::combine)
+            .toSortedArray();
+    }
+
+    /**
+     * An {@link IntStream} pulling from a {@link List} of sorted
+     * {@code int} streams in natural order. The least top element among
+     * all streams is next in queue.
+     *
+     * @param streams List of sorted streams
+     * @return        A new stream as a blend of all streams in the list.
+     * @see #streamFlatten(List, Comparator)
+     */
+    public static IntStream streamFlattenInt(
+        final List<IntStream> streams)
+    {
+        return streamFlattenInt(streams, Integer::compare);
+    }
+
+    /**
+     * An {@link IntStream} pulling from a {@link List} of sorted
+     * {@code int} streams, with a comparison of the top elements among all
+     * streams in the list. The least element is next in queue.
+     * No element is boxed along the way.
+     *
+     * @param streams List of streams, sorted according to {@code comp}
+     * @param comp    Compares two elements, returning a negative, zero or
+     *                positive result as {@link Integer#compare(int, int)} does
+     * @return        A new stream as a blend of all streams in the list.
+     * @see #streamFlatten(List, Comparator)
+     */
+    public static IntStream streamFlattenInt(
+        final List<IntStream> streams,
+        final IntBinaryOperator comp)
+    {
+        final Spliterator.OfInt spltr = new IntFlatSpliter(streams, comp);
+        final IntStream result = StreamSupport.intStream(spltr, false);
+        return result;
+    }
+
+    /**
+     * A {@link LongStream} pulling from a {@link List} of sorted
+     * {@code long} streams in natural order. The least top element among
+     * all streams is next in queue.
+     *
+     * @param streams List of sorted streams
+     * @return        A new stream as a blend of all streams in the list.
+     * @see #streamFlatten(List, Comparator)
+     */
+    public static LongStream streamFlattenLong(
+        final List<LongStream> streams)
+    {
+        return streamFlattenLong(streams, Long::compare);
+    }
+
+    /**
+     * A {@link LongStream} pulling from a {@link List} of sorted
+     * {@code long} streams, with a comparison of the top elements among all
+     * streams in the list. The least element is next in queue.
+     * No element is boxed along the way.
+     *
+     * @param streams List of streams, sorted according to {@code comp}
+     * @param comp    Compares two elements, returning a negative, zero or
+     *                positive result as {@link Long#compare(long, long)} does
+     * @return        A new stream as a blend of all streams in the list.
+     * @see #streamFlatten(List, Comparator)
+     */
+    public static LongStream streamFlattenLong(
+        final List<LongStream> streams,
+        final LongBinaryOperator comp)
+    {
+        final Spliterator.OfLong spltr = new LongFlatSpliter(streams, comp);
+        final LongStream result = StreamSupport.longStream(spltr, false);
+        return result;
+    }
+
+    /**
+     * A {@link DoubleStream} pulling from a {@link List} of sorted
+     * {@code double} streams in natural order. The least top element among
+     * all streams is next in queue.
+     *
+     * @param streams List of sorted streams
+     * @return        A new stream as a blend of all streams in the list.
+     * @see #streamFlatten(List, Comparator)
+     */
+    public static DoubleStream streamFlattenDouble(
+        final List<DoubleStream> streams)
+    {
+        return streamFlattenDouble(streams, Double::compare);
+    }
+
+    /**
+     * A {@link DoubleStream} pulling from a {@link List} of sorted
+     * {@code double} streams, with a comparison of the top elements among all
+     * streams in the list. The least element is next in queue.
+     * No element is boxed along the way.
+     *
+     * @param streams List of streams, sorted according to {@code comp}
+     * @param comp    Compares two elements, returning a negative, zero or
+     *                positive result as
+     *                {@link Double#compare(double, double)} does
+     * @return        A new stream as a blend of all streams in the list.
+     * @see #streamFlatten(List, Comparator)
+     */
+    public static DoubleStream streamFlattenDouble(
+        final List<DoubleStream> streams,
+        final DoubleBinaryOperator comp)
+    {
+        final Spliterator.OfDouble spltr =
+            new DoubleFlatSpliter(streams, comp);
+        final DoubleStream result = StreamSupport.doubleStream(spltr, false);
+        return result;
+    }
+
+    /**
+     * Batch a stream into lists of {@code n} consecutive items, the last
+     * batch holding whatever is left over. Each batch is a fresh, read-only
+     * list.
+     *
+     * @param <T>    Stream item type
+     * @param stream Items to batch
+     * @param n      Batch size
+     * @return       The batches of {@code stream}
+     * @see #chunked(Stream, int, boolean)
+     */
+    public static <T> Stream<List<T>> chunked(
+        final Stream<T> stream,
+        final int n)
+    {
+        return chunked(stream, n, false);
+    }
+
+    /**
+     * Batch a stream into lists of {@code n} consecutive items, the last
+     * batch holding whatever is left over.
+     *
+     * <p>In reuse mode every batch is the same read-only list, a view of one
+     * buffer that is refilled for the next batch, so nothing is allocated
+     * per batch. Such a batch is only valid until the next one is taken;
+     * copy it to keep it, and don't collect or sort the batches.
+     *
+     * <p>The number of batches is known when the stream size is known.
+     *
+     * @param <T>    Stream item type
+     * @param stream Items to batch
+     * @param n      Batch size, at least 1
+     * @param reuse  Whether batches are views of a single reused buffer
+     * @return       The batches of {@code stream}
+     */
+    public static <T> Stream<List<T>> chunked(
+        final Stream<T> stream,
+        final int n,
+        final boolean reuse)
+    {
+        final Spliterator<List<T>> spltr = new WindowSpliter.OfRef<>(
+            stream.spliterator(), n, n, true, reuse);
+        final Stream<List<T>> result = StreamSupport.stream(spltr, false)
+            .onClose(stream::close);
+        return result;
+    }
+
+    /**
+     * Windows of {@code n} consecutive items of a stream, a window starting
+     * at every {@code step} items. Each window is a fresh, read-only list.
+     *
+     * @param <T>    Stream item type
+     * @param stream Items to window
+     * @param n      Window size
+     * @param step   Items from the start of one window to the next
+     * @return       The windows of {@code stream}
+     * @see #sliding(Stream, int, int, boolean)
+     */
+    public static <T> Stream<List<T>> sliding(
+        final Stream<T> stream,
+        final int n,
+        final int step)
+    {
+        return sliding(stream, n, step, false);
+    }
+
+    /**
+     * Windows of {@code n} consecutive items of a stream, a window starting
+     * at every {@code step} items. Only full windows are passed along, so a
+     * stream of fewer than {@code n} items has none; when {@code step}
+     * exceeds {@code n}, the items between windows are dropped.
+     *
+     * <p>Items are kept in a ring buffer written twice over, so every window
+     * is a contiguous view of it and is not copied out item by item. In
+     * reuse mode every window is the same read-only list over that buffer,
+     * so nothing is allocated per window. Such a window is only valid until
+     * the next one is taken; copy it to keep it.
+     *
+     * <p>The number of windows is known when the stream size is known.
+     *
+     * @param <T>    Stream item type
+     * @param stream Items to window
+     * @param n      Window size, at least 1
+     * @param step   Items from the start of one window to the next,
+     *               at least 1
+     * @param reuse  Whether windows are views of a single reused buffer
+     * @return       The windows of {@code stream}
+     */
+    public static <T> Stream<List<T>> sliding(
+        final Stream<T> stream,
+        final int n,
+        final int step,
+        final boolean reuse)
+    {
+        final Spliterator<List<T>> spltr = new WindowSpliter.OfRef<>(
+            stream.spliterator(), n, step, false, reuse);
+        final Stream<List<T>> result = StreamSupport.stream(spltr, false)
+            .onClose(stream::close);
+        return result;
+    }
+
+    /**
+     * Batch an {@link IntStream} into read-only buffers of {@code n}
+     * consecutive values, the last batch holding whatever is left over.
+     * Each buffer's position is zero and its limit is the batch size.
+     *
+     * @param stream Values to batch
+     * @param n      Batch size, at least 1
+     * @param reuse  Whether batches are views of a single reused array,
+     *               each valid only until the next batch is taken
+     * @return       The batches of {@code stream}
+     * @see #chunked(Stream, int, boolean)
+     */
+    public static Stream<IntBuffer> chunkedInt(
+        final IntStream stream,
+        final int n,
+        final boolean reuse)
+    {
+        final Spliterator<IntBuffer> spltr = new WindowSpliter.OfInt(
+            stream.spliterator(), n, n, true, reuse);
+        final Stream<IntBuffer> result = StreamSupport.stream(spltr, false)
+            .onClose(stream::close);
+        return result;
+    }
+
+    /**
+     * Windows of {@code n} consecutive values of an {@link IntStream}, as
+     * read-only buffers, a window starting at every {@code step} values.
+     * Each buffer's position is zero and its limit is {@code n}.
+     *
+     * @param stream Values to window
+     * @param n      Window size, at least 1
+     * @param step   Values from the start of one window to the next,
+     *               at least 1
+     * @param reuse  Whether windows are views of a single reused array,
+     *               each valid only until the next window is taken
+     * @return       The windows of {@code stream}
+     * @see #sliding(Stream, int, int, boolean)
+     */
+    public static Stream<IntBuffer> slidingInt(
+        final IntStream stream,
+        final int n,
+        final int step,
+        final boolean reuse)
+    {
+        final Spliterator<IntBuffer> spltr = new WindowSpliter.OfInt(
+            stream.spliterator(), n, step, false, reuse);
+        final Stream<IntBuffer> result = StreamSupport.stream(spltr, false)
+            .onClose(stream::close);
+        return result;
+    }
+
+    /**
+     * Batch a {@link LongStream} into read-only buffers of {@code n}
+     * consecutive values, the last batch holding whatever is left over.
+     * Each buffer's position is zero and its limit is the batch size.
+     *
+     * @param stream Values to batch
+     * @param n      Batch size, at least 1
+     * @param reuse  Whether batches are views of a single reused array,
+     *               each valid only until the next batch is taken
+     * @return       The batches of {@code stream}
+     * @see #chunked(Stream, int, boolean)
+     */
+    public static Stream<LongBuffer> chunkedLong(
+        final LongStream stream,
+        final int n,
+        final boolean reuse)
+    {
+        final Spliterator<LongBuffer> spltr = new WindowSpliter.OfLong(
+            stream.spliterator(), n, n, true, reuse);
+        final Stream<LongBuffer> result = StreamSupport.stream(spltr, false)
+            .onClose(stream::close);
+        return result;
+    }
+
+    /**
+     * Windows of {@code n} consecutive values of a {@link LongStream}, as
+     * read-only buffers, a window starting at every {@code step} values.
+     * Each buffer's position is zero and its limit is {@code n}.
+     *
+     * @param stream Values to window
+     * @param n      Window size, at least 1
+     * @param step   Values from the start of one window to the next,
+     *               at least 1
+     * @param reuse  Whether windows are views of a single reused array,
+     *               each valid only until the next window is taken
+     * @return       The windows of {@code stream}
+     * @see #sliding(Stream, int, int, boolean)
+     */
+    public static Stream<LongBuffer> slidingLong(
+        final LongStream stream,
+        final int n,
+        final int step,
+        final boolean reuse)
+    {
+        final Spliterator<LongBuffer> spltr = new WindowSpliter.OfLong(
+            stream.spliterator(), n, step, false, reuse);
+        final Stream<LongBuffer> result = StreamSupport.stream(spltr, false)
+            .onClose(stream::close);
+        return result;
+    }
+
+    /**
+     * Batch a {@link DoubleStream} into read-only buffers of {@code n}
+     * consecutive values, the last batch holding whatever is left over.
+     * Each buffer's position is zero and its limit is the batch size.
+     *
+     * @param stream Values to batch
+     * @param n      Batch size, at least 1
+     * @param reuse  Whether batches are views of a single reused array,
+     *               each valid only until the next batch is taken
+     * @return       The batches of {@code stream}
+     * @see #chunked(Stream, int, boolean)
+     */
+    public static Stream<DoubleBuffer> chunkedDouble(
+        final DoubleStream stream,
+        final int n,
+        final boolean reuse)
+    {
+        final Spliterator<DoubleBuffer> spltr = new WindowSpliter.OfDouble(
+            stream.spliterator(), n, n, true, reuse);
+        final Stream<DoubleBuffer> result = StreamSupport.stream(spltr, false)
+            .onClose(stream::close);
+        return result;
+    }
+
+    /**
+     * Windows of {@code n} consecutive values of a {@link DoubleStream}, as
+     * read-only buffers, a window starting at every {@code step} values.
+     * Each buffer's position is zero and its limit is {@code n}.
+     *
+     * @param stream Values to window
+     * @param n      Window size, at least 1
+     * @param step   Values from the start of one window to the next,
+     *               at least 1
+     * @param reuse  Whether windows are views of a single reused array,
+     *               each valid only until the next window is taken
+     * @return       The windows of {@code stream}
+     * @see #sliding(Stream, int, int, boolean)
+     */
+    public static Stream<DoubleBuffer> slidingDouble(
+        final DoubleStream stream,
+        final int n,
+        final int step,
+        final boolean reuse)
+    {
+        final Spliterator<DoubleBuffer> spltr = new WindowSpliter.OfDouble(
+            stream.spliterator(), n, step, false, reuse);
+        final Stream<DoubleBuffer> result = StreamSupport.stream(spltr, false)
+            .onClose(stream::close);
+        return result;
+    }
+
+    /**
+     * The running aggregate of a stream: element {@code i} of the result is
+     * {@code identity op x0 op x1 ... op xi}, running balances from amounts
+     * for instance. {@code op} must be associative, as for
+     * {@link Stream#reduce(Object, BinaryOperator)}, and {@code identity}
+     * may be an opening value rather than a true identity.
+     *
+     * <p>A parallel stream whose size and split sizes are known is scanned
+     * as a parallel prefix on the fork-join pool, two passes over an array
+     * of all the elements, made when the result is first read, and the
+     * result is parallel. Any other stream is scanned sequentially, one
+     * element at a time, holding only the aggregate so far, and the result
+     * is sequential. Closing the result closes {@code stream}.
+     *
+     * @param <T>      Stream item type
+     * @param stream   Items to aggregate, in order
+     * @param identity Aggregate before the first item
+     * @param op       Associative operator folding an item into the
+     *                 aggregate
+     * @return         The aggregate after each item of {@code stream}
+     * @see Arrays#parallelPrefix(Object[], BinaryOperator)
+     */
+    public static <T> Stream<T> scan(
+        final Stream<T> stream,
+        final T identity,
+        final BinaryOperator<T> op)
+    {
+        Objects.requireNonNull(op);
+        final boolean parallel = stream.isParallel();
+        final Spliterator<T> source = stream.spliterator();
+        final Stream<T> result;
+        if (parallel && source.hasCharacteristics(ScanSpliter.SPLITTABLE)) {
+            result = StreamSupport.stream(
+                () -> Arrays.spliterator(prefix(source, identity, op)),
+                ScanSpliter.PREFIXED, true);
+        } else {
+            result = StreamSupport.stream(
+                new ScanSpliter.OfRef<>(source, identity, op), false);
+        }
+        return result.onClose(stream::close);
+    }
+
+    /**
+     * The running aggregate of a {@link LongStream}, as
+     * {@link #scan(Stream, Object, BinaryOperator)} gives for objects,
+     * without boxing: a parallel prefix for a parallel stream of known
+     * split sizes, a sequential scan otherwise.
+     * Closing the result closes {@code stream}.
+     *
+     * @param stream   Values to aggregate, in order
+     * @param identity Aggregate before the first value
+     * @param op       Associative operator folding a value into the
+     *                 aggregate
+     * @return         The aggregate after each value of {@code stream}
+     */
+    public static LongStream scanLong(
+        final LongStream stream,
+        final long identity,
+        final LongBinaryOperator op)
+    {
+        Objects.requireNonNull(op);
+        final boolean parallel = stream.isParallel();
+        final Spliterator.OfLong source = stream.spliterator();
+        final LongStream result;
+        if (parallel && source.hasCharacteristics(ScanSpliter.SPLITTABLE)) {
+            result = StreamSupport.longStream(() -> {
+                    final long[] values = StreamSupport
+                        .longStream(source, true).toArray();
+                    if (values.length > 0) {
+                        values[0] = op.applyAsLong(identity, values[0]);
+                        Arrays.parallelPrefix(values, op);
+                    }
+                    return Arrays.spliterator(values);
+                },
+                ScanSpliter.PREFIXED, true);
+        } else {
+            result = StreamSupport.longStream(
+                new ScanSpliter.OfLong(source, identity, op), false);
+        }
+        return result.onClose(stream::close);
+    }
+
+    /**
+     * The running aggregate of a {@link DoubleStream}, as
+     * {@link #scan(Stream, Object, BinaryOperator)} gives for objects,
+     * without boxing: a parallel prefix for a parallel stream of known
+     * split sizes, a sequential scan otherwise. Floating point sums may
+     * round differently between the two, their additions being grouped
+     * differently. Closing the result closes {@code stream}.
+     *
+     * @param stream   Values to aggregate, in order
+     * @param identity Aggregate before the first value
+     * @param op       Associative operator folding a value into the
+     *                 aggregate
+     * @return         The aggregate after each value of {@code stream}
+     */
+    public static DoubleStream scanDouble(
+        final DoubleStream stream,
+        final double identity,
+        final DoubleBinaryOperator op)
+    {
+        Objects.requireNonNull(op);
+        final boolean parallel = stream.isParallel();
+        final Spliterator.OfDouble source = stream.spliterator();
+        final DoubleStream result;
+        if (parallel && source.hasCharacteristics(ScanSpliter.SPLITTABLE)) {
+            result = StreamSupport.doubleStream(() -> {
+                    final double[] values = StreamSupport
+                        .doubleStream(source, true).toArray();
+                    if (values.length > 0) {
+                        values[0] = op.applyAsDouble(identity, values[0]);
+                        Arrays.parallelPrefix(values, op);
+                    }
+                    return Arrays.spliterator(values);
+                },
+                ScanSpliter.PREFIXED, true);
+        } else {
+            result = StreamSupport.doubleStream(
+                new ScanSpliter.OfDouble(source, identity, op), false);
+        }
+        return result.onClose(stream::close);
+    }
+
+    /**
+     * The elements of a source, each replaced by its running aggregate,
+     * computed in parallel.
+     */
+    private static <T> T[] prefix(
+        final Spliterator<T> source,
+        final T identity,
+        final BinaryOperator<T> op)
+    {
+        @SuppressWarnings("unchecked")
+        final T[] result = (T[]) StreamSupport.stream(source, true).toArray();
+        if (result.length > 0) {
+            result[0] = op.apply(identity, result[0]);
+            Arrays.parallelPrefix(result, op);
+        }
+        return result;
+    }
+
 }
@@ -0,0 +1,472 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.IntBinaryOperator;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Bounded heaps keeping the {@code k} least elements offered to them, the
+ * accumulators of the top-k collectors of {@link Streams}.
+ *
+ * <p>Each is a binary max-heap of at most {@code k} elements, its worst
+ * kept element at the root, so an element not among the least so far is
+ * turned away with a single comparison, and one that is costs
+ * {@code O(log k)}. A heap starts small and grows as it keeps elements, so
+ * it holds no more than {@code k} of them however long the stream, nor
+ * more than the stream has, however large {@code k}. Heaps of parallel
+ * pieces are combined by offering the elements of one to the other: the
+ * heap of objects offers the smaller one's to the larger, the primitive
+ * heaps offer the later piece's to the earlier.
+ *
+ * <p>The heap of objects breaks ties by the order elements were offered,
+ * counting the elements of a parallel piece as offered after those of the
+ * piece before it, so equal elements are kept and listed as a stable sort
+ * would. The primitive heaps don't keep the offer order: of values their
+ * comparison finds equal, which ones are kept at the cut, and their order,
+ * is unspecified.
+ *
+ * @author Corey Morgan
+ */
+final class TopK {
+
+    private TopK() {
+    }
+
+    // the room a heap starts with, when k is larger
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static void checkK(final int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k < 0: " + k);
+        }
+    }
+
+    /**
+     * The room a heap holding {@code length} elements grows to, at most
+     * {@code k}.
+     */
+    private static int grown(final int length, final int k) {
+        return (int) Math.min(k, Math.max(INITIAL_CAPACITY, 2L * length));
+    }
+
+    /**
+     * The least {@code k} objects.
+     *
+     * @param <T> type of the elements
+     */
+    static final class OfRef<T> {
+
+        private final Comparator<? super T> comp;
+        private final int k;
+        private Object[] heap;
+        // when each kept element was offered, breaking ties
+        private long[] seqs;
+        private int size = 0;
+        private long offered = 0L;
+
+        OfRef(final Comparator<? super T> comp, final int k) {
+            checkK(k);
+            this.comp = Objects.requireNonNull(comp);
+            this.k = k;
+            this.heap = new Object[Math.min(k, INITIAL_CAPACITY)];
+            this.seqs = new long[heap.length];
+        }
+
+        @SuppressWarnings("unchecked")
+        private T at(final int i) {
+            return (T) heap[i];
+        }
+
+        /**
+         * Compare two elements by the comparator, then by offer order.
+         */
+        private int compare(
+            final T a,
+            final long aSeq,
+            final T b,
+            final long bSeq)
+        {
+            final int cmp = comp.compare(a, b);
+            final int result = cmp != 0 ? cmp : Long.compare(aSeq, bSeq);
+            return result;
+        }
+
+        void add(final T item) {
+            offer(item, offered++);
+        }
+
+        private void offer(final T item, final long seq) {
+            if (size < k) {
+                if (size == heap.length) {
+                    heap = Arrays.copyOf(heap, grown(size, k));
+                    seqs = Arrays.copyOf(seqs, heap.length);
+                }
+                int i = size++;
+                while (i > 0 && compare(at((i - 1) >>> 1), seqs[(i - 1) >>> 1],
+                    item, seq) < 0)
+                {
+                    heap[i] = heap[(i - 1) >>> 1];
+                    seqs[i] = seqs[(i - 1) >>> 1];
+                    i = (i - 1) >>> 1;
+                }
+                heap[i] = item;
+                seqs[i] = seq;
+            } else if (size > 0 && compare(item, seq, at(0), seqs[0]) < 0) {
+                siftDown(item, seq, size);
+            }
+        }
+
+        /**
+         * Put an element in place of the root of the first {@code end}
+         * elements.
+         */
+        private void siftDown(final T item, final long seq, final int end) {
+            int i = 0;
+            int child;
+            while ((child = 2 * i + 1) < end) {
+                if (child + 1 < end && compare(at(child + 1), seqs[child + 1],
+                    at(child), seqs[child]) > 0)
+                {
+                    child++;
+                }
+                if (compare(at(child), seqs[child], item, seq) <= 0) {
+                    break;
+                }
+                heap[i] = heap[child];
+                seqs[i] = seqs[child];
+                i = child;
+            }
+            heap[i] = item;
+            seqs[i] = seq;
+        }
+
+        /**
+         * Combine with the heap of the next piece of the stream, whose
+         * elements count as offered after all of this one's.
+         */
+        OfRef<T> combine(final OfRef<T> next) {
+            final long total = offered + next.offered;
+            final OfRef<T> result;
+            if (size >= next.size) {
+                for (int i = 0; i < next.size; i++) {
+                    offer(next.at(i), offered + next.seqs[i]);
+                }
+                result = this;
+            } else {
+                // shifting every sequence alike keeps the heap in order
+                for (int i = 0; i < next.size; i++) {
+                    next.seqs[i] += offered;
+                }
+                for (int i = 0; i < size; i++) {
+                    next.offer(at(i), seqs[i]);
+                }
+                result = next;
+            }
+            result.offered = total;
+            return result;
+        }
+
+        /**
+         * The kept elements in order. This sorts the heap away, so it is the
+         * last call on it.
+         */
+        List<T> toSortedList() {
+            // heap sort: move the greatest to the end, then restore
+            for (int end = size - 1; end > 0; end--) {
+                final T item = at(end);
+                final long seq = seqs[end];
+                heap[end] = heap[0];
+                seqs[end] = seqs[0];
+                siftDown(item, seq, end);
+            }
+            final List<T> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(at(i));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The least {@code k} {@code int}s.
+     */
+    static final class OfInt {
+
+        private final IntBinaryOperator comp;
+        private final int k;
+        private int[] heap;
+        private int size = 0;
+
+        OfInt(final IntBinaryOperator comp, final int k) {
+            checkK(k);
+            this.comp = Objects.requireNonNull(comp);
+            this.k = k;
+            this.heap = new int[Math.min(k, INITIAL_CAPACITY)];
+        }
+
+        void add(final int item) {
+            if (size < k) {
+                if (size == heap.length) {
+                    heap = Arrays.copyOf(heap, grown(size, k));
+                }
+                int i = size++;
+                while (i > 0
+                    && comp.applyAsInt(heap[(i - 1) >>> 1], item) < 0)
+                {
+                    heap[i] = heap[(i - 1) >>> 1];
+                    i = (i - 1) >>> 1;
+                }
+                heap[i] = item;
+            } else if (size > 0 && comp.applyAsInt(item, heap[0]) < 0) {
+                int i = 0;
+                int child;
+                while ((child = 2 * i + 1) < size) {
+                    if (child + 1 < size
+                        && comp.applyAsInt(heap[child + 1], heap[child]) > 0)
+                    {
+                        child++;
+                    }
+                    if (comp.applyAsInt(heap[child], item) <= 0) {
+                        break;
+                    }
+                    heap[i] = heap[child];
+                    i = child;
+                }
+                heap[i] = item;
+            }
+        }
+
+        void combine(final OfInt other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.heap[i]);
+            }
+        }
+
+        int[] toSortedArray() {
+            final int[] result = Arrays.copyOf(heap, size);
+            // heap sort: move the greatest to the end, then restore
+            for (int end = size - 1; end > 0; end--) {
+                final int item = result[end];
+                result[end] = result[0];
+                int i = 0;
+                int child;
+                while ((child = 2 * i + 1) < end) {
+                    if (child + 1 < end
+                        && comp.applyAsInt(result[child + 1], result[child])
+                            > 0)
+                    {
+                        child++;
+                    }
+                    if (comp.applyAsInt(result[child], item) <= 0) {
+                        break;
+                    }
+                    result[i] = result[child];
+                    i = child;
+                }
+                result[i] = item;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The least {@code k} {@code long}s.
+     */
+    static final class OfLong {
+
+        private final LongBinaryOperator comp;
+        private final int k;
+        private long[] heap;
+        private int size = 0;
+
+        OfLong(final LongBinaryOperator comp, final int k) {
+            checkK(k);
+            this.comp = Objects.requireNonNull(comp);
+            this.k = k;
+            this.heap = new long[Math.min(k, INITIAL_CAPACITY)];
+        }
+
+        void add(final long item) {
+            if (size < k) {
+                if (size == heap.length) {
+                    heap = Arrays.copyOf(heap, grown(size, k));
+                }
+                int i = size++;
+                while (i > 0
+                    && comp.applyAsLong(heap[(i - 1) >>> 1], item) < 0)
+                {
+                    heap[i] = heap[(i - 1) >>> 1];
+                    i = (i - 1) >>> 1;
+                }
+                heap[i] = item;
+            } else if (size > 0 && comp.applyAsLong(item, heap[0]) < 0) {
+                int i = 0;
+                int child;
+                while ((child = 2 * i + 1) < size) {
+                    if (child + 1 < size
+                        && comp.applyAsLong(heap[child + 1], heap[child]) > 0)
+                    {
+                        child++;
+                    }
+                    if (comp.applyAsLong(heap[child], item) <= 0) {
+                        break;
+                    }
+                    heap[i] = heap[child];
+                    i = child;
+                }
+                heap[i] = item;
+            }
+        }
+
+        void combine(final OfLong other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.heap[i]);
+            }
+        }
+
+        long[] toSortedArray() {
+            final long[] result = Arrays.copyOf(heap, size);
+            // heap sort: move the greatest to the end, then restore
+            for (int end = size - 1; end > 0; end--) {
+                final long item = result[end];
+                result[end] = result[0];
+                int i = 0;
+                int child;
+                while ((child = 2 * i + 1) < end) {
+                    if (child + 1 < end
+                        && comp.applyAsLong(result[child + 1], result[child])
+                            > 0)
+                    {
+                        child++;
+                    }
+                    if (comp.applyAsLong(result[child], item) <= 0) {
+                        break;
+                    }
+                    result[i] = result[child];
+                    i = child;
+                }
+                result[i] = item;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The least {@code k} {@code double}s.
+     */
+    static final class OfDouble {
+
+        private final DoubleBinaryOperator comp;
+        private final int k;
+        private double[] heap;
+        private int size = 0;
+
+        OfDouble(final DoubleBinaryOperator comp, final int k) {
+            checkK(k);
+            this.comp = Objects.requireNonNull(comp);
+            this.k = k;
+            this.heap = new double[Math.min(k, INITIAL_CAPACITY)];
+        }
+
+        void add(final double item) {
+            if (size < k) {
+                if (size == heap.length) {
+                    heap = Arrays.copyOf(heap, grown(size, k));
+                }
+                int i = size++;
+                while (i > 0
+                    && comp.applyAsDouble(heap[(i - 1) >>> 1], item) < 0)
+                {
+                    heap[i] = heap[(i - 1) >>> 1];
+                    i = (i - 1) >>> 1;
+                }
+                heap[i] = item;
+            } else if (size > 0 && comp.applyAsDouble(item, heap[0]) < 0) {
+                int i = 0;
+                int child;
+                while ((child = 2 * i + 1) < size) {
+                    if (child + 1 < size
+                        && comp.applyAsDouble(heap[child + 1], heap[child]) > 0)
+                    {
+                        child++;
+                    }
+                    if (comp.applyAsDouble(heap[child], item) <= 0) {
+                        break;
+                    }
+                    heap[i] = heap[child];
+                    i = child;
+                }
+                heap[i] = item;
+            }
+        }
+
+        void combine(final OfDouble other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.heap[i]);
+            }
+        }
+
+        double[] toSortedArray() {
+            final double[] result = Arrays.copyOf(heap, size);
+            // heap sort: move the greatest to the end, then restore
+            for (int end = size - 1; end > 0; end--) {
+                final double item = result[end];
+                result[end] = result[0];
+                int i = 0;
+                int child;
+                while ((child = 2 * i + 1) < end) {
+                    if (child + 1 < end
+                        && comp.applyAsDouble(result[child + 1], result[child])
+                            > 0)
+                    {
+                        child++;
+                    }
+                    if (comp.applyAsDouble(result[child], item) <= 0) {
+                        break;
+                    }
+                    result[i] = result[child];
+                    i = child;
+                }
+                result[i] = item;
+            }
+            return result;
+        }
+    }
+}
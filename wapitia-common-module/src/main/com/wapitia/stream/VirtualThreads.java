@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Supplies threads for the background work of stream operators: virtual
+ * threads when the running JVM has them, and daemon platform threads
+ * otherwise.
+ *
+ * <p>The library is built for older JVMs, so virtual threads are looked up
+ * reflectively, once.
+ *
+ * @author Corey Morgan
+ */
+final class VirtualThreads {
+
+    private static final ThreadFactory FACTORY = lookup();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * A thread factory making virtual threads if the JVM supports them,
+     * or else daemon threads.
+     *
+     * @return a shared thread factory
+     */
+    static ThreadFactory factory() {
+        return FACTORY;
+    }
+
+    private static ThreadFactory lookup() {
+        ThreadFactory result;
+        try {
+            final Object builder =
+                Thread.class.getMethod("ofVirtual").invoke(null);
+            final Method factory = Class.forName("java.lang.Thread$Builder")
+                .getMethod("factory");
+            result = (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            final AtomicInteger count = new AtomicInteger();
+            result = r -> {
+                final Thread t = new Thread(r,
+                    "wapitia-stream-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            };
+        }
+        return result;
+    }
+}
@@ -32,26 +32,84 @@
 
 package com.wapitia.stream;
 
-import java.util.Iterator;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
 import java.util.Objects;
-import java.util.Spliterators;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
-import java.util.stream.Stream;
 
+/**
+ * {@code WhileSpliter<T>} passes through the elements of a source
+ * {@link Spliterator} while a condition is met ("take while"), or skips
+ * them while it is met and passes through the rest ("drop while").
+ *
+ * <p>Sequential traversal reads the source lazily and stops reading as soon
+ * as the outcome is known. The source's ORDERED, DISTINCT, SORTED, NONNULL,
+ * IMMUTABLE and CONCURRENT characteristics carry over; its size becomes an
+ * upper bound.
+ *
+ * <p>Splitting, as a parallel stream does, evaluates the condition over the
+ * whole source at once on the fork-join pool, keeping encounter order.
+ * The source is split into segments that are tested concurrently, each
+ * buffering what it reads. Once a segment finds a failing element, segments
+ * after it stop testing, since their outcome is settled. The result is then
+ * served as a SIZED, splittable concatenation of the surviving buffers and
+ * the unread rest of the source.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> type of the items in the stream
+ */
 @Deprecated   // Use jdk9 java.util.stream.WhileIter when it comes on line.
-class WhileSpliter<T> extends Spliterators.AbstractSpliterator<T> {
+class WhileSpliter<T> implements Spliterator<T> {
+
+    /**
+     * Segments smaller than this are not worth testing on their own.
+     */
+    static final long MIN_SEGMENT_SIZE = 1L << 10;
+
+    private static final int KEPT_CHARACTERISTICS = ORDERED | DISTINCT
+        | SORTED | NONNULL | IMMUTABLE | CONCURRENT;
 
-    protected final Predicate<T> continueWhile;
-    protected final Iterator<T> streamIter;
+    protected final Predicate<? super T> continueWhile;
+    protected final Spliterator<T> source;
+    protected final boolean dropping;
+
+    // take while: the condition has failed. drop while: it has failed once
     protected boolean done = false;
 
-    public WhileSpliter(Stream<T> stream, Predicate<T> continueWhile) {
-        super(Long.MAX_VALUE, 0);
+    // the outcome of a split, served in place of the source from then on
+    private Spliterator<T> evaluated = null;
+
+    // the last element read from the source
+    private T item;
+
+    /**
+     * Take or drop the source elements while a condition is met.
+     *
+     * @param source the source elements. Not null.
+     * @param continueWhile the condition. Not null.
+     * @param dropping {@code true} to drop elements while the condition is
+     *          met, {@code false} to take them
+     */
+    public WhileSpliter(
+        final Spliterator<T> source,
+        final Predicate<? super T> continueWhile,
+        final boolean dropping)
+    {
         Objects.requireNonNull(continueWhile);
-        Objects.requireNonNull(stream);
+        Objects.requireNonNull(source);
         this.continueWhile = continueWhile;
-        this.streamIter = stream.iterator();
+        this.source = source;
+        this.dropping = dropping;
     }
 
     @Override
@@ -59,16 +117,211 @@ class WhileSpliter<T> extends Spliterators.AbstractSpliterator<T> {
         Objects.requireNonNull(consum);
 
         boolean advanced = false;
-        while (!done && !advanced && streamIter.hasNext()) {
-            final T item = streamIter.next();
-            if (continueWhile.test(item)) {
-                consum.accept(item);
-                advanced = true;
+        if (evaluated != null) {
+            advanced = evaluated.tryAdvance(consum);
+        } else if (dropping) {
+            if (done) {
+                advanced = source.tryAdvance(consum);
             } else {
-                this.done = true;
+                while (!done && source.tryAdvance(this::hold)) {
+                    if (!continueWhile.test(item)) {
+                        this.done = true;
+                        consum.accept(release());
+                        advanced = true;
+                    }
+                }
+                item = null;
+            }
+        } else {
+            while (!done && !advanced && source.tryAdvance(this::hold)) {
+                if (continueWhile.test(item)) {
+                    consum.accept(release());
+                    advanced = true;
+                } else {
+                    item = null;
+                    this.done = true;
+                }
             }
         }
         return advanced;
     }
 
-}
\ No newline at end of file
+    @Override
+    public void forEachRemaining(final Consumer<? super T> consum) {
+        Objects.requireNonNull(consum);
+        if (evaluated != null) {
+            evaluated.forEachRemaining(consum);
+        } else if (dropping) {
+            if (done || tryAdvance(consum)) {
+                source.forEachRemaining(consum);
+            }
+        } else {
+            while (tryAdvance(consum)) {
+                // keep taking
+            }
+        }
+    }
+
+    private void hold(final T t) {
+        this.item = t;
+    }
+
+    private T release() {
+        final T result = item;
+        item = null;
+        return result;
+    }
+
+    /**
+     * Settle the outcome over the whole source in parallel, unless
+     * sequential traversal has already begun, then split that outcome.
+     *
+     * @return a leading part of the outcome, or {@code null}
+     */
+    @Override
+    public Spliterator<T> trySplit() {
+        final Spliterator<T> result;
+        if (evaluated != null) {
+            result = evaluated.trySplit();
+        } else if (done) {
+            result = null;
+        } else {
+            final Spliterator<T> lead = source.trySplit();
+            if (lead == null) {
+                result = null;
+            } else {
+                evaluated = evaluate(lead);
+                result = evaluated.trySplit();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cut the source, which has already been split once into {@code lead}
+     * and the rest, into segments, test them all concurrently, and stitch
+     * together the outcome.
+     */
+    private Spliterator<T> evaluate(final Spliterator<T> lead) {
+        final List<Segment> segments = new ArrayList<>();
+        final int depth = 32 - Integer.numberOfLeadingZeros(
+            ForkJoinPool.getCommonPoolParallelism()) + 2;
+        final AtomicInteger firstFailure = new AtomicInteger(Integer.MAX_VALUE);
+        cut(lead, depth, segments, firstFailure);
+        cut(source, depth, segments, firstFailure);
+        ForkJoinTask.invokeAll(segments);
+
+        final int failed = firstFailure.get();
+        final Deque<Spliterator<T>> pieces = new ArrayDeque<>();
+        for (final Segment segment : segments) {
+            if (dropping) {
+                if (segment.index > failed) {
+                    pieces.add(segment.buffer.spliterator());
+                    pieces.add(segment.rest);
+                } else if (segment.index == failed) {
+                    pieces.add(segment.buffer
+                        .subList(segment.failedAt, segment.buffer.size())
+                        .spliterator());
+                    pieces.add(segment.rest);
+                }
+            } else if (segment.index < failed) {
+                pieces.add(segment.buffer.spliterator());
+            } else if (segment.index == failed) {
+                pieces.add(segment.buffer.subList(0, segment.failedAt)
+                    .spliterator());
+            }
+        }
+        done = true;
+        return new ConcatSpliter<>(pieces);
+    }
+
+    /**
+     * Split a part of the source further, appending its segments in
+     * encounter order.
+     */
+    private void cut(
+        final Spliterator<T> part,
+        final int depth,
+        final List<Segment> segments,
+        final AtomicInteger firstFailure)
+    {
+        Spliterator<T> lead = null;
+        if (depth > 0 && part.estimateSize() > MIN_SEGMENT_SIZE) {
+            lead = part.trySplit();
+        }
+        if (lead == null) {
+            segments.add(new Segment(segments.size(), part, firstFailure));
+        } else {
+            cut(lead, depth - 1, segments, firstFailure);
+            cut(part, depth - 1, segments, firstFailure);
+        }
+    }
+
+    @Override
+    public long estimateSize() {
+        return evaluated != null
+            ? evaluated.estimateSize()
+            : source.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+        return evaluated != null
+            ? evaluated.characteristics()
+            : source.characteristics() & KEPT_CHARACTERISTICS;
+    }
+
+    @Override
+    public Comparator<? super T> getComparator() {
+        return source.getComparator();
+    }
+
+    /**
+     * A run of the source tested as one fork-join task. It reads up to its
+     * first failing element, buffering what it reads, and gives up early when
+     * an earlier segment has failed.
+     */
+    @SuppressWarnings("serial")
+    private final class Segment extends RecursiveAction {
+
+        final int index;
+        final Spliterator<T> rest;
+        final AtomicInteger firstFailure;
+        final List<T> buffer = new ArrayList<>();
+
+        // offset in buffer of this segment's first failing element
+        int failedAt = -1;
+
+        Segment(
+            final int index,
+            final Spliterator<T> rest,
+            final AtomicInteger firstFailure)
+        {
+            this.index = index;
+            this.rest = rest;
+            this.firstFailure = firstFailure;
+        }
+
+        @Override
+        protected void compute() {
+            final Consumer<T> read = buffer::add;
+            boolean testing = true;
+            while (testing
+                && firstFailure.get() > index
+                && rest.tryAdvance(read))
+            {
+                if (!continueWhile.test(buffer.get(buffer.size() - 1))) {
+                    failedAt = buffer.size() - 1;
+                    testing = false;
+                    int seen = firstFailure.get();
+                    while (index < seen
+                        && !firstFailure.compareAndSet(seen, index))
+                    {
+                        seen = firstFailure.get();
+                    }
+                }
+            }
+        }
+    }
+
+}
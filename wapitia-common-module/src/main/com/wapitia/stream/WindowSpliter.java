@@ -0,0 +1,452 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * {@code WindowSpliter<W>} groups the elements of a source into windows of
+ * {@code n} consecutive elements, a new window starting every {@code step}
+ * elements: fixed-size batches when {@code step == n}, and sliding windows
+ * when {@code step < n}.
+ *
+ * <p>Elements are held in a buffer of {@code n}, or a mirrored ring buffer of
+ * {@code 2n} for overlapping windows, so every window is a contiguous range
+ * of it. Windows are either fresh copies, or, in reuse mode, read-only views
+ * of the buffer itself that are only valid until the next window is taken,
+ * so nothing is allocated per window.
+ *
+ * <p>The nested classes adapt the source type: {@link OfRef} gives
+ * {@link List} windows, and the primitive flavors give read-only
+ * {@link java.nio.Buffer} windows. Window counts are exact when the source
+ * is SIZED.
+ *
+ * @author Corey Morgan
+ *
+ * @param <W> type of the windows
+ */
+abstract class WindowSpliter<W> implements Spliterator<W> {
+
+    protected final int n;
+    protected final int step;
+    protected final boolean partial;
+    protected final boolean reuse;
+
+    // buffer length to mirror writes at, or 0 when windows don't overlap
+    protected final int mirror;
+
+    private int head = 0;
+    private int filled = 0;
+    private long skip = 0L;
+    private boolean done = false;
+
+    /**
+     * Window the elements of a source.
+     *
+     * @param n       window size, at least 1
+     * @param step    elements between window starts, at least 1
+     * @param partial whether a final, short window is passed along
+     * @param reuse   whether windows are views of a reused buffer
+     */
+    protected WindowSpliter(
+        final int n,
+        final int step,
+        final boolean partial,
+        final boolean reuse)
+    {
+        if (n < 1) {
+            throw new IllegalArgumentException("n < 1: " + n);
+        }
+        if (step < 1) {
+            throw new IllegalArgumentException("step < 1: " + step);
+        }
+        this.n = n;
+        this.step = step;
+        this.partial = partial;
+        this.reuse = reuse;
+        this.mirror = step < n ? n : 0;
+    }
+
+    /**
+     * Read the next source element into the buffer at {@code at}, and at
+     * {@code at + mirror} when mirroring.
+     *
+     * @return {@code false} when the source is exhausted
+     */
+    protected abstract boolean pull(int at);
+
+    /**
+     * Read and drop the next source element.
+     *
+     * @return {@code false} when the source is exhausted
+     */
+    protected abstract boolean discard();
+
+    /**
+     * The window over the buffer range starting at {@code from}.
+     */
+    protected abstract W window(int from, int size);
+
+    protected abstract Spliterator<?> source();
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super W> action) {
+        Objects.requireNonNull(action);
+        boolean advanced = false;
+        if (!done) {
+            while (skip > 0L && discard()) {
+                skip--;
+            }
+            while (filled < n && pull((head + filled) % n)) {
+                filled++;
+            }
+            final boolean full = filled == n;
+            if (full || (partial && filled > 0)) {
+                action.accept(window(head, filled));
+                advanced = true;
+            }
+            if (full) {
+                if (step < n) {
+                    head = (head + step) % n;
+                    filled -= step;
+                } else {
+                    filled = 0;
+                    skip = step - n;
+                }
+            } else {
+                done = true;
+            }
+        }
+        return advanced;
+    }
+
+    @Override
+    public Spliterator<W> trySplit() {
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        final long result;
+        final Spliterator<?> source = source();
+        if (done) {
+            result = 0L;
+        } else if (!source.hasCharacteristics(SIZED)) {
+            result = Long.MAX_VALUE;
+        } else {
+            final long available =
+                Math.max(0L, source.estimateSize() - skip) + filled;
+            if (partial) {
+                result = available / n + (available % n == 0L ? 0L : 1L);
+            } else {
+                result = available < n ? 0L : (available - n) / step + 1L;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | (source().characteristics() & SIZED);
+    }
+
+    /**
+     * Windows of object elements, as read-only {@link List}s.
+     *
+     * @param <T> type of the source elements
+     */
+    static final class OfRef<T> extends WindowSpliter<List<T>> {
+
+        private final Spliterator<T> source;
+        private final Object[] buffer;
+        private final ArrayView<T> view;
+        private int at;
+        private final Consumer<T> store;
+        private final Consumer<T> drop = t -> { };
+
+        OfRef(
+            final Spliterator<T> source,
+            final int n,
+            final int step,
+            final boolean partial,
+            final boolean reuse)
+        {
+            super(n, step, partial, reuse);
+            this.source = Objects.requireNonNull(source);
+            this.buffer = new Object[n + mirror];
+            this.store = t -> {
+                buffer[at] = t;
+                if (mirror != 0) {
+                    buffer[at + mirror] = t;
+                }
+            };
+            this.view = new ArrayView<>(buffer, 0, 0);
+        }
+
+        @Override
+        protected boolean pull(final int at) {
+            this.at = at;
+            return source.tryAdvance(store);
+        }
+
+        @Override
+        protected boolean discard() {
+            return source.tryAdvance(drop);
+        }
+
+        @Override
+        protected List<T> window(final int from, final int size) {
+            return reuse
+                ? view.reset(buffer, from, size)
+                : new ArrayView<>(
+                    Arrays.copyOfRange(buffer, from, from + size), 0, size);
+        }
+
+        @Override
+        protected Spliterator<?> source() {
+            return source;
+        }
+    }
+
+    /**
+     * Windows of {@code int} elements, as read-only {@link IntBuffer}s.
+     */
+    static final class OfInt extends WindowSpliter<IntBuffer> {
+
+        private final Spliterator.OfInt source;
+        private final int[] buffer;
+        // in reuse mode, a read-only view starting at each buffer offset
+        private final IntBuffer[] views;
+        private int at;
+        private final IntConsumer store;
+        private final IntConsumer drop = v -> { };
+
+        OfInt(
+            final Spliterator.OfInt source,
+            final int n,
+            final int step,
+            final boolean partial,
+            final boolean reuse)
+        {
+            super(n, step, partial, reuse);
+            this.source = Objects.requireNonNull(source);
+            this.buffer = new int[n + mirror];
+            this.store = v -> {
+                buffer[at] = v;
+                if (mirror != 0) {
+                    buffer[at + mirror] = v;
+                }
+            };
+            this.views = reuse ? new IntBuffer[n] : null;
+        }
+
+        @Override
+        protected boolean pull(final int at) {
+            this.at = at;
+            return source.tryAdvance(store);
+        }
+
+        @Override
+        protected boolean discard() {
+            return source.tryAdvance(drop);
+        }
+
+        @Override
+        protected IntBuffer window(final int from, final int size) {
+            final IntBuffer result;
+            if (reuse) {
+                if (views[from] == null) {
+                    views[from] = IntBuffer.wrap(buffer, from, n)
+                        .slice().asReadOnlyBuffer();
+                }
+                result = views[from];
+                result.clear().limit(size);
+            } else {
+                result = IntBuffer.wrap(
+                    Arrays.copyOfRange(buffer, from, from + size))
+                    .asReadOnlyBuffer();
+            }
+            return result;
+        }
+
+        @Override
+        protected Spliterator<?> source() {
+            return source;
+        }
+    }
+
+    /**
+     * Windows of {@code long} elements, as read-only {@link LongBuffer}s.
+     */
+    static final class OfLong extends WindowSpliter<LongBuffer> {
+
+        private final Spliterator.OfLong source;
+        private final long[] buffer;
+        // in reuse mode, a read-only view starting at each buffer offset
+        private final LongBuffer[] views;
+        private int at;
+        private final LongConsumer store;
+        private final LongConsumer drop = v -> { };
+
+        OfLong(
+            final Spliterator.OfLong source,
+            final int n,
+            final int step,
+            final boolean partial,
+            final boolean reuse)
+        {
+            super(n, step, partial, reuse);
+            this.source = Objects.requireNonNull(source);
+            this.buffer = new long[n + mirror];
+            this.store = v -> {
+                buffer[at] = v;
+                if (mirror != 0) {
+                    buffer[at + mirror] = v;
+                }
+            };
+            this.views = reuse ? new LongBuffer[n] : null;
+        }
+
+        @Override
+        protected boolean pull(final int at) {
+            this.at = at;
+            return source.tryAdvance(store);
+        }
+
+        @Override
+        protected boolean discard() {
+            return source.tryAdvance(drop);
+        }
+
+        @Override
+        protected LongBuffer window(final int from, final int size) {
+            final LongBuffer result;
+            if (reuse) {
+                if (views[from] == null) {
+                    views[from] = LongBuffer.wrap(buffer, from, n)
+                        .slice().asReadOnlyBuffer();
+                }
+                result = views[from];
+                result.clear().limit(size);
+            } else {
+                result = LongBuffer.wrap(
+                    Arrays.copyOfRange(buffer, from, from + size))
+                    .asReadOnlyBuffer();
+            }
+            return result;
+        }
+
+        @Override
+        protected Spliterator<?> source() {
+            return source;
+        }
+    }
+
+    /**
+     * Windows of {@code double} elements, as read-only
+     * {@link DoubleBuffer}s.
+     */
+    static final class OfDouble extends WindowSpliter<DoubleBuffer> {
+
+        private final Spliterator.OfDouble source;
+        private final double[] buffer;
+        // in reuse mode, a read-only view starting at each buffer offset
+        private final DoubleBuffer[] views;
+        private int at;
+        private final DoubleConsumer store;
+        private final DoubleConsumer drop = v -> { };
+
+        OfDouble(
+            final Spliterator.OfDouble source,
+            final int n,
+            final int step,
+            final boolean partial,
+            final boolean reuse)
+        {
+            super(n, step, partial, reuse);
+            this.source = Objects.requireNonNull(source);
+            this.buffer = new double[n + mirror];
+            this.store = v -> {
+                buffer[at] = v;
+                if (mirror != 0) {
+                    buffer[at + mirror] = v;
+                }
+            };
+            this.views = reuse ? new DoubleBuffer[n] : null;
+        }
+
+        @Override
+        protected boolean pull(final int at) {
+            this.at = at;
+            return source.tryAdvance(store);
+        }
+
+        @Override
+        protected boolean discard() {
+            return source.tryAdvance(drop);
+        }
+
+        @Override
+        protected DoubleBuffer window(final int from, final int size) {
+            final DoubleBuffer result;
+            if (reuse) {
+                if (views[from] == null) {
+                    views[from] = DoubleBuffer.wrap(buffer, from, n)
+                        .slice().asReadOnlyBuffer();
+                }
+                result = views[from];
+                result.clear().limit(size);
+            } else {
+                result = DoubleBuffer.wrap(
+                    Arrays.copyOfRange(buffer, from, from + size))
+                    .asReadOnlyBuffer();
+            }
+            return result;
+        }
+
+        @Override
+        protected Spliterator<?> source() {
+            return source;
+        }
+    }
+}
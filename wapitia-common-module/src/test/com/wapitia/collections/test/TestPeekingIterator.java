@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.collections.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.wapitia.collections.PeekingIterator;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class TestPeekingIterator {
+
+    @Test
+    public void testSingleConsumer() {
+        exercise(PeekingIterator.of(Arrays.asList("a", null, "c").iterator()));
+    }
+
+    @Test
+    public void testConcurrent() {
+        exercise(PeekingIterator.concurrent(
+            Arrays.asList("a", null, "c").iterator()));
+    }
+
+    private void exercise(final PeekingIterator<String> it) {
+        assertTrue(it.hasNext());
+        assertEquals("a", it.peek());
+        assertEquals("a", it.peek());
+        assertEquals("a", it.next());
+        assertNull(it.peek());
+        it.push("b");
+        it.push("x");
+        assertEquals("x", it.next());
+        assertEquals("b", it.next());
+        assertNull(it.next());
+        assertEquals("c", it.next());
+        assertFalse(it.hasNext());
+        it.push(null);
+        assertTrue(it.hasNext());
+        assertNull(it.next());
+        assertFalse(it.hasNext());
+        try {
+            it.peek();
+            fail("peek past the end");
+        } catch (NoSuchElementException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testConcurrentSharedDrain() throws Exception {
+        final PeekingIterator<Integer> it = PeekingIterator.concurrent(
+            IntStream.range(0, 100_000).boxed().iterator());
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<List<Integer>>> parts = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                parts.add(pool.submit(() -> {
+                    final List<Integer> taken = new ArrayList<>();
+                    while (true) {
+                        try {
+                            final Integer peeked = it.peek();
+                            final Integer item = it.next();
+                            if (!peeked.equals(item)) {
+                                // lost a race; give the peeked view back
+                                it.push(item);
+                            } else {
+                                taken.add(item);
+                            }
+                        } catch (NoSuchElementException done) {
+                            return taken;
+                        }
+                    }
+                }));
+            }
+            final List<Integer> all = new ArrayList<>();
+            for (final Future<List<Integer>> part : parts) {
+                all.addAll(part.get());
+            }
+            Collections.sort(all);
+            assertEquals(IntStream.range(0, 100_000).boxed()
+                .collect(Collectors.toList()), all);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
@@ -32,6 +32,7 @@
 
 package com.wapitia.stream.test;
 
+import com.wapitia.collections.test.TestPeekingIterator;
 import com.wapitia.common.test.junit.WapitiaTestMain;
 
 import org.junit.runner.JUnitCore;
@@ -49,6 +50,20 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
     TestFlatSpliter.class,
+    TestPeekingIterator.class,
+    TestWhileSpliter.class,
+    TestSortedOps.class,
+    TestExternalSort.class,
+    TestWindows.class,
+    TestMetrics.class,
+    TestMergeHub.class,
+    TestCachedStream.class,
+    TestRecordFileMerge.class,
+    TestTopK.class,
+    TestInterleave.class,
+    TestMapAsync.class,
+    TestSeekable.class,
+    TestScan.class,
     })
 public class StreamsTestSuite {
 
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.wapitia.stream.CachedStream;
+import com.wapitia.stream.Streams;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class TestCachedStream {
+
+    @Test
+    public void testReplay() {
+        final AtomicInteger pulled = new AtomicInteger();
+        final Stream<Integer> counted = IntStream.range(0, 5000).boxed()
+            .peek(i -> pulled.incrementAndGet());
+        try (CachedStream<Integer> cache = Streams.cached(counted)) {
+            final Iterator<Integer> first = cache.stream().iterator();
+            assertEquals(Integer.valueOf(0), first.next());
+            assertEquals(Integer.valueOf(1), first.next());
+
+            final List<Integer> all = cache.stream()
+                .collect(Collectors.toList());
+            assertEquals(5000, all.size());
+            assertEquals(Integer.valueOf(4999), all.get(4999));
+            assertEquals(Integer.valueOf(2), first.next());
+            assertEquals(5000, pulled.get());
+        }
+    }
+
+    @Test
+    public void testMergeWithItself() {
+        try (CachedStream<Integer> cache = Streams.cached(Stream.of(1, 3, 5)))
+        {
+            assertEquals(Arrays.asList(1, 1, 3, 3, 5, 5),
+                Streams.streamFlatten(
+                    Arrays.asList(cache.stream(), cache.stream()),
+                    Comparator.<Integer>naturalOrder())
+                .collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testSealed() {
+        try (CachedStream<Integer> cache = Streams.cached(Stream.of(1, 2)))
+        {
+            final Stream<Integer> reader = cache.stream();
+            cache.seal();
+            try {
+                cache.stream();
+                fail("read a sealed cache anew");
+            } catch (final IllegalStateException e) {
+                // expected
+            }
+            assertEquals(Arrays.asList(1, 2),
+                reader.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testSpill() throws IOException {
+        final List<String> data = IntStream.range(0, 20_000)
+            .mapToObj(i -> "item-" + i)
+            .collect(Collectors.toList());
+        final Path dir = Files.createTempDirectory("test-cache");
+        try {
+            try (CachedStream<String> cache = Streams.cached(data.stream(),
+                new TestExternalSort.StringSerializer(), 16 * 1024, dir))
+            {
+                final Iterator<String> lagging = cache.stream().iterator();
+                assertEquals("item-0", lagging.next());
+                assertEquals(data,
+                    cache.stream().collect(Collectors.toList()));
+                cache.seal();
+                for (int i = 1; i < data.size(); i++) {
+                    assertEquals(data.get(i), lagging.next());
+                }
+            }
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals(0L, files.count());
+            }
+        } finally {
+            Files.delete(dir);
+        }
+    }
+
+}
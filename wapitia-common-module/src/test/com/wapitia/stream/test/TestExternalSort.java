@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.wapitia.stream.RecordSerializer;
+import com.wapitia.stream.Streams;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class TestExternalSort {
+
+    /** A variable length record: a length prefix, then UTF-8 bytes. */
+    static class StringSerializer implements RecordSerializer<String> {
+
+        @Override
+        public int sizeOf(final String item) {
+            return 4 + item.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        @Override
+        public void write(final String item, final ByteBuffer buffer) {
+            final byte[] bytes = item.getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+
+        @Override
+        public String read(final ByteBuffer buffer) {
+            final byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void testSpilledRuns() throws IOException {
+
+        List<String> data = new Random(42).ints(50_000, 0, 1_000_000)
+            .mapToObj(i -> "k" + i)
+            .collect(Collectors.toList());
+        List<String> expected = data.stream().sorted()
+            .collect(Collectors.toList());
+
+        Path dir = Files.createTempDirectory("test-sort");
+        try {
+            try (Stream<String> sorted = Streams.sortedExternal(
+                data.stream(), Comparator.naturalOrder(),
+                new StringSerializer(), 32 * 1024, dir))
+            {
+                assertEquals(expected, sorted.collect(Collectors.toList()));
+                try (Stream<Path> runs = Files.list(dir)) {
+                    assertTrue(runs.count() > 10);
+                }
+            }
+            try (Stream<Path> runs = Files.list(dir)) {
+                assertEquals(0L, runs.count());
+            }
+        } finally {
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testCloseMidway() throws IOException {
+
+        List<String> data = new Random(7).ints(20_000, 0, 1_000_000)
+            .mapToObj(i -> "k" + i)
+            .collect(Collectors.toList());
+        List<String> expected = data.stream().sorted()
+            .collect(Collectors.toList());
+
+        Path dir = Files.createTempDirectory("test-sort");
+        try {
+            try (Stream<String> sorted = Streams.sortedExternal(
+                data.parallelStream(), Comparator.naturalOrder(),
+                new StringSerializer(), 16 * 1024, dir))
+            {
+                Iterator<String> it = sorted.iterator();
+                assertEquals(expected.get(0), it.next());
+                assertEquals(expected.get(1), it.next());
+            }
+            // the run files are closed and gone, not waiting on a GC
+            try (Stream<Path> runs = Files.list(dir)) {
+                assertEquals(0L, runs.count());
+            }
+            try (Stream<String> sorted = Streams.sortedExternal(
+                data.parallelStream(), Comparator.naturalOrder(),
+                new StringSerializer(), 16 * 1024, dir))
+            {
+                assertEquals(expected, sorted.parallel()
+                    .collect(Collectors.toList()));
+            }
+        } finally {
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testInMemory() {
+
+        try (Stream<String> sorted = Streams.sortedExternal(
+            Stream.of("c", "a", "b"), Comparator.naturalOrder(),
+            new StringSerializer(), 1024))
+        {
+            assertEquals("abc", sorted.collect(Collectors.joining()));
+        }
+    }
+
+}
@@ -36,14 +36,34 @@ import static java.util.stream.IntStream.range;
 
 import com.wapitia.stream.Streams;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
 import org.junit.Test;
 
 import java.time.LocalDate;
 import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class TestFlatSpliter {
 
@@ -92,5 +112,293 @@ public class TestFlatSpliter {
         results.limit(40).forEach(System.out::println);
     }
 
+    @Test
+    public void testManySources() {
+
+        List<Stream<Integer>> sources = range(0, 250)
+            .mapToObj(i -> range(0, 20).map(j -> j * 250 + i).boxed())
+            .collect(Collectors.toList());
+
+        List<Integer> results =
+            Streams.streamFlatten(sources, Comparator.naturalOrder())
+                .collect(Collectors.toList());
+        List<Integer> expected =
+            range(0, 5000).boxed().collect(Collectors.toList());
+        assertEquals(expected, results);
+    }
+
+    @Test
+    public void testEmptySources() {
+
+        List<Stream<String>> allEmpty =
+            Arrays.asList(Stream.empty(), Stream.empty());
+        assertEquals(0L, Streams.streamFlatten(allEmpty,
+            Comparator.<String>naturalOrder()).count());
+
+        List<Stream<String>> noSources = Collections.emptyList();
+        assertEquals(0L, Streams.streamFlatten(noSources,
+            Comparator.<String>naturalOrder()).count());
+
+        List<Stream<String>> someEmpty = Arrays.asList(
+            Stream.empty(), Stream.of("a", "c"), Stream.empty(),
+            Stream.of("b"));
+        assertEquals(Arrays.asList("a", "b", "c"),
+            Streams.streamFlatten(someEmpty, Comparator.naturalOrder())
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testTiesFollowListOrder() {
+
+        List<Stream<String>> sources = Arrays.asList(
+            Stream.of("b1", "c1"), Stream.of("a2", "b2"), Stream.of("b3"));
+        Comparator<String> firstLetter = Comparator.comparing(
+            s -> s.charAt(0));
+
+        assertEquals(Arrays.asList("a2", "b1", "b2", "b3", "c1"),
+            Streams.streamFlatten(sources, firstLetter)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testParallelSplit() {
+
+        // 7 sorted sources of varied density and many duplicate keys
+        List<List<Integer>> lists = range(1, 8)
+            .mapToObj(i -> range(0, 3000 * i).map(j -> j / i).boxed()
+                .collect(Collectors.toList()))
+            .collect(Collectors.toList());
+        List<Integer> expected = lists.stream()
+            .flatMap(List::stream)
+            .sorted()
+            .collect(Collectors.toList());
+
+        Spliterator<Integer> spliter = Streams.streamFlatten(
+            lists.stream().map(List::stream).collect(Collectors.toList()),
+            Comparator.<Integer>naturalOrder()).spliterator();
+        assertEquals(expected.size(), spliter.getExactSizeIfKnown());
+        Spliterator<Integer> lower = spliter.trySplit();
+        assertNotNull(lower);
+        assertEquals(expected.size(),
+            lower.estimateSize() + spliter.estimateSize());
+
+        List<Integer> results = Streams.streamFlatten(
+                lists.stream().map(List::stream).collect(Collectors.toList()),
+                Comparator.<Integer>naturalOrder())
+            .parallel()
+            .map(i -> i + 1)
+            .collect(Collectors.toList());
+        assertEquals(
+            expected.stream().map(i -> i + 1).collect(Collectors.toList()),
+            results);
+    }
+
+    @Test
+    public void testNoSplitOfUnsplittableSources() {
+
+        // SIZED sources that won't split, or split a batch at a time
+        List<List<Integer>> lists = range(0, 3)
+            .mapToObj(i -> range(0, 100_000).map(j -> j * 3 + i).boxed()
+                .collect(Collectors.toList()))
+            .collect(Collectors.toList());
+        AtomicInteger read = new AtomicInteger();
+        List<Stream<Integer>> mapped = lists.stream()
+            .map(list -> list.stream().map(j -> {
+                read.incrementAndGet();
+                return j;
+            }))
+            .collect(Collectors.toList());
+        Spliterator<Integer> spliter = Streams.streamFlatten(mapped,
+            Comparator.<Integer>naturalOrder()).spliterator();
+        assertEquals(300_000L, spliter.getExactSizeIfKnown());
+        assertEquals(null, spliter.trySplit());
+        assertTrue(read.get() <= 3);
+        List<Integer> merged = new ArrayList<>();
+        spliter.forEachRemaining(merged::add);
+        assertEquals(range(0, 300_000).boxed().collect(Collectors.toList()),
+            merged);
+
+        read.set(0);
+        List<Stream<Integer>> iterated = lists.stream()
+            .map(list -> StreamSupport.stream(Spliterators.spliterator(
+                    list.stream().peek(j -> read.incrementAndGet())
+                        .iterator(),
+                    list.size(), Spliterator.ORDERED), false))
+            .collect(Collectors.toList());
+        spliter = Streams.streamFlatten(iterated,
+            Comparator.<Integer>naturalOrder()).spliterator();
+        assertEquals(null, spliter.trySplit());
+        // one batch read from each source, not the way to the pivot
+        assertTrue(read.get() <= 3 * 1025);
+        merged.clear();
+        spliter.forEachRemaining(merged::add);
+        assertEquals(range(0, 300_000).boxed().collect(Collectors.toList()),
+            merged);
+    }
+
+    @Test
+    public void testRunsMatchSingleSteps() {
+
+        // clustered keys: each source wins runs of 50, with ties at the seams
+        Comparator<int[]> byKey = Comparator.comparingInt(a -> a[0]);
+        List<List<int[]>> lists = range(0, 5)
+            .mapToObj(i -> range(0, 1000)
+                .mapToObj(j -> new int[] {(j / 50) * 250 + i * 50 + j % 50
+                    - (j % 50 == 0 ? 1 : 0), i})
+                .collect(Collectors.toList()))
+            .collect(Collectors.toList());
+
+        List<int[]> stepped = new ArrayList<>();
+        Iterator<int[]> it = Streams.streamFlatten(
+            lists.stream().map(List::stream).collect(Collectors.toList()),
+            byKey).iterator();
+        it.forEachRemaining(stepped::add);
+
+        List<int[]> bulk = new ArrayList<>();
+        Streams.streamFlatten(
+            lists.stream().map(List::stream).collect(Collectors.toList()),
+            byKey).forEach(bulk::add);
+
+        assertEquals(5000, bulk.size());
+        assertEquals(stepped, bulk);
+    }
+
+    @Test
+    public void testPrimitiveMerges() {
+
+        assertArrayEquals(new int[] {1, 2, 3, 4, 5, 6, 7},
+            Streams.streamFlattenInt(Arrays.asList(
+                IntStream.of(1, 4, 7), IntStream.empty(),
+                IntStream.of(2, 5), IntStream.of(3, 6))).toArray());
+
+        // reverse order, with a long run from the first stream
+        assertArrayEquals(new long[] {90L, 80L, 70L, 60L, 50L, 40L, 10L},
+            Streams.streamFlattenLong(Arrays.asList(
+                LongStream.of(90L, 80L, 70L, 60L, 10L),
+                LongStream.of(50L, 40L)),
+                (a, b) -> Long.compare(b, a)).toArray());
+
+        assertArrayEquals(new double[] {0.5, 1.0, 1.5, 2.0},
+            Streams.streamFlattenDouble(Arrays.asList(
+                DoubleStream.of(1.0, 2.0), DoubleStream.of(0.5, 1.5)))
+                .toArray(),
+            0.0);
+
+        int[] stepped = new int[3000];
+        Spliterator.OfInt spliter = Streams.streamFlattenInt(range(0, 3)
+            .mapToObj(i -> range(0, 1000).map(j -> j * 3 + i))
+            .collect(Collectors.toList())).spliterator();
+        int n = 0;
+        while (n < stepped.length / 2) {
+            final int at = n++;
+            spliter.tryAdvance((int v) -> stepped[at] = v);
+        }
+        final int[] next = {n};
+        spliter.forEachRemaining((int v) -> stepped[next[0]++] = v);
+        assertArrayEquals(range(0, 3000).toArray(), stepped);
+    }
+
+    @Test
+    public void testPrefetch() {
+
+        List<Stream<Integer>> slow = range(0, 8)
+            .mapToObj(i -> range(0, 200).map(j -> j * 8 + i).boxed()
+                .peek(j -> pause(j % 50 == 0 ? 2 : 0)))
+            .collect(Collectors.toList());
+
+        try (Stream<Integer> merged = Streams.streamFlattenPrefetch(
+            slow, Comparator.naturalOrder(), 16))
+        {
+            assertEquals(range(0, 1600).boxed().collect(Collectors.toList()),
+                merged.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testPrefetchFailure() {
+
+        List<Stream<Integer>> sources = Arrays.asList(
+            Stream.of(1, 3, 5),
+            Stream.of(2, 4).map(i -> {
+                if (i == 4) {
+                    throw new IllegalStateException("bad source");
+                }
+                return i;
+            }));
+        List<Integer> seen = new ArrayList<>();
+        try (Stream<Integer> merged = Streams.streamFlattenPrefetch(
+            sources, Comparator.naturalOrder(), 4))
+        {
+            merged.forEach(seen::add);
+            fail("source failure not rethrown");
+        } catch (IllegalStateException expected) {
+            assertEquals("bad source", expected.getMessage());
+        }
+        assertEquals(Arrays.asList(1, 2), seen);
+    }
+
+    @Test
+    public void testPrefetchClose() throws InterruptedException {
+
+        CountDownLatch closed = new CountDownLatch(2);
+        List<Stream<Integer>> endless = Arrays.asList(
+            Stream.iterate(0, i -> i + 2).onClose(closed::countDown),
+            Stream.iterate(1, i -> i + 2).onClose(closed::countDown));
+
+        try (Stream<Integer> merged = Streams.streamFlattenPrefetch(
+            endless, Comparator.naturalOrder(), 8))
+        {
+            assertEquals(Arrays.asList(0, 1, 2, 3, 4),
+                merged.limit(5).collect(Collectors.toList()));
+        }
+        assertTrue(closed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testFlattenByKey() {
+
+        List<List<Transaction>> lists = range(0, 7)
+            .mapToObj(i -> Stream.iterate(
+                    new Transaction(
+                        LocalDate.of(2016, Month.JANUARY, 1).plusDays(i % 4)),
+                    (Transaction xp) -> new Transaction(xp.date.plusDays(3)))
+                .limit(50)
+                .collect(Collectors.toList()))
+            .collect(Collectors.toList());
+        List<Transaction> expected = Streams.streamFlatten(
+                lists.stream().map(List::stream).collect(Collectors.toList()),
+                new Transaction.Comp())
+            .collect(Collectors.toList());
+
+        List<Transaction> byLong = Streams.streamFlattenByLong(
+                lists.stream().map(List::stream).collect(Collectors.toList()),
+                t -> t.date.toEpochDay())
+            .collect(Collectors.toList());
+        List<Transaction> byDate = Streams.streamFlattenBy(
+                lists.stream().map(List::stream).collect(Collectors.toList()),
+                (Transaction t) -> t.date)
+            .collect(Collectors.toList());
+
+        // same elements in the same order, ties included
+        assertEquals(350, expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertTrue(expected.get(i) == byLong.get(i));
+            assertTrue(expected.get(i) == byDate.get(i));
+        }
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"),
+            Streams.streamFlattenBy(
+                    Arrays.asList(Stream.of("b", "e"), Stream.<String>empty(),
+                        Stream.of("a", "c", "d")),
+                    Function.identity())
+            .collect(Collectors.toList()));
+    }
+
+    private static void pause(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
 }
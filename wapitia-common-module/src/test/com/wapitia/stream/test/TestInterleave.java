@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream.test;
+
+import static org.junit.Assert.assertEquals;
+
+import com.wapitia.stream.Streams;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class TestInterleave {
+
+    @Test
+    public void testRoundRobin() {
+        assertEquals(Arrays.asList("a1", "b1", "c1", "a2", "c2", "a3", "c3"),
+            Streams.interleave(Arrays.asList(
+                    Stream.of("a1", "a2", "a3"),
+                    Stream.of("b1"),
+                    Stream.of("c1", "c2", "c3")))
+            .collect(Collectors.toList()));
+        assertEquals(6L, Streams.interleave(Arrays.asList(
+                Stream.of(1, 2), Stream.of(3, 4, 5, 6)))
+            .spliterator().getExactSizeIfKnown());
+    }
+
+    @Test
+    public void testWeighted() {
+        assertEquals(Arrays.asList("a1", "a2", "a3", "b1", "a4", "b2", "b3"),
+            Streams.interleave(Arrays.asList(
+                    Stream.of("a1", "a2", "a3", "a4"),
+                    Stream.of("b1", "b2", "b3")),
+                new int[] {3, 1})
+            .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testUnordered() {
+        final List<Stream<Integer>> streams = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            streams.add(IntStream.range(i * 1000, (i + 1) * 1000).boxed());
+        }
+        final List<Integer> all = Streams.interleaveUnordered(streams)
+            .sorted()
+            .collect(Collectors.toList());
+        assertEquals(IntStream.range(0, 100_000).boxed()
+            .collect(Collectors.toList()), all);
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+
+package com.wapitia.stream.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.wapitia.stream.Streams;
+
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class TestMapAsync {
+
+    @Test
+    public void testOrderKept() {
+        // later items finish first, yet come out in source order
+        final List<Integer> mapped = Streams.mapAsync(
+                IntStream.range(0, 40).boxed(),
+                i -> {
+                    sleep(40 - i);
+                    return i * 2;
+                },
+                8)
+            .collect(Collectors.toList());
+        assertEquals(IntStream.range(0, 40).map(i -> i * 2).boxed()
+            .collect(Collectors.toList()), mapped);
+    }
+
+    @Test
+    public void testBounded() {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger most = new AtomicInteger();
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            final long count = Streams.mapAsync(
+                    IntStream.range(0, 100).boxed(),
+                    i -> {
+                        most.accumulateAndGet(running.incrementAndGet(),
+                            Math::max);
+                        sleep(2);
+                        running.decrementAndGet();
+                        return i;
+                    },
+                    5, executor)
+                .count();
+            assertEquals(100L, count);
+            assertTrue(most.get() <= 5);
+            assertTrue(most.get() > 1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailure() {
+        final AtomicInteger mapped = new AtomicInteger();
+        try {
+            Streams.mapAsync(
+                    IntStream.range(0, 1000).boxed(),
+                    i -> {
+                        if (i == 3) {
+                            throw new IllegalArgumentException("bad " + i);
+                        }
+                        sleep(1);
+                        mapped.incrementAndGet();
+                        return i;
+                    },
+                    4)
+                .forEach(i -> { });
+            fail("expected the mapping's exception");
+        } catch (final IllegalArgumentException e) {
+            assertEquals("bad 3", e.getMessage());
+        }
+        assertTrue(mapped.get() < 1000);
+    }
+
+    @Test
+    public void testCloseCancels() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(3);
+        final CountDownLatch interrupted = new CountDownLatch(3);
+        final AtomicInteger closed = new AtomicInteger();
+        final Stream<Integer> source = IntStream.range(0, 10).boxed()
+            .onClose(closed::incrementAndGet);
+        try (Stream<Integer> mapped = Streams.mapAsync(source,
+                i -> {
+                    if (i == 0) {
+                        return i;
+                    }
+                    started.countDown();
+                    try {
+                        Thread.sleep(60_000);
+                    } catch (final InterruptedException e) {
+                        interrupted.countDown();
+                    }
+                    return i;
+                },
+                4))
+        {
+            final Iterator<Integer> it = mapped.iterator();
+            assertEquals(Integer.valueOf(0), it.next());
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+        }
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        assertEquals(1, closed.get());
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
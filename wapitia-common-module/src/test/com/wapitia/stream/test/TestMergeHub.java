@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.wapitia.stream.MergeHub;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class TestMergeHub {
+
+    private static final Comparator<Integer> NATURAL =
+        Comparator.naturalOrder();
+
+    private static List<Integer> rest(final Iterator<Integer> it) {
+        final List<Integer> result = new ArrayList<>();
+        it.forEachRemaining(result::add);
+        return result;
+    }
+
+    @Test
+    public void testAttachWhileReading() {
+        final MergeHub<Integer> hub = new MergeHub<>(NATURAL);
+        hub.attach(Stream.of(1, 3, 5));
+        final Iterator<Integer> it = hub.stream().iterator();
+        assertEquals(Integer.valueOf(1), it.next());
+        hub.attach(Stream.of(4, 6));
+        hub.attach(Stream.empty());
+        hub.complete();
+        assertEquals(Arrays.asList(3, 4, 5, 6), rest(it));
+    }
+
+    @Test
+    public void testWatermark() {
+        final MergeHub<Integer> hub = new MergeHub<>(NATURAL);
+        hub.attach(Stream.of(1, 3, 5));
+        final Iterator<Integer> it = hub.stream().iterator();
+        it.next();
+        it.next();
+        try {
+            hub.attach(Stream.of(2, 7));
+            fail("attached below the watermark");
+        } catch (final IllegalStateException e) {
+            // expected
+        }
+        hub.attach(Stream.of(3, 7));
+        hub.complete();
+        assertEquals(Arrays.asList(3, 5, 7), rest(it));
+    }
+
+    @Test
+    public void testDetach() {
+        final MergeHub<Integer> hub = new MergeHub<>(NATURAL);
+        final boolean[] closed = new boolean[1];
+        final MergeHub<Integer>.Source first = hub.attach(
+            Stream.of(1, 2, 3, 4).onClose(() -> closed[0] = true));
+        hub.attach(Stream.of(10, 11));
+        final Iterator<Integer> it = hub.stream().iterator();
+        assertEquals(Integer.valueOf(1), it.next());
+        first.detach();
+        hub.complete();
+        assertEquals(Arrays.asList(10, 11), rest(it));
+        assertEquals(true, closed[0]);
+    }
+
+    @Test
+    public void testExhaustedSourceClosed() {
+        final MergeHub<Integer> hub = new MergeHub<>(NATURAL);
+        final boolean[] closed = new boolean[1];
+        hub.attach(Stream.of(1, 2).onClose(() -> closed[0] = true));
+        hub.attach(Stream.of(10, 11, 12));
+        final Iterator<Integer> it = hub.stream().iterator();
+        assertEquals(Integer.valueOf(1), it.next());
+        assertEquals(Integer.valueOf(2), it.next());
+        assertEquals(Integer.valueOf(10), it.next());
+        // closed once it ran out, not when the hub closes
+        assertEquals(true, closed[0]);
+        hub.complete();
+        assertEquals(Arrays.asList(11, 12), rest(it));
+    }
+
+    @Test
+    public void testConsumerWaits() throws Exception {
+        final MergeHub<Integer> hub = new MergeHub<>(NATURAL);
+        final CompletableFuture<List<Integer>> consumer =
+            CompletableFuture.supplyAsync(() ->
+                hub.stream().collect(Collectors.toList()));
+        hub.attach(Stream.of(2, 4));
+        // the consumer may have passed 4 already; a head equal to the
+        // watermark is still accepted
+        hub.attach(Stream.of(4, 5));
+        hub.complete();
+        final List<Integer> merged = consumer.get(10, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList(2, 4, 4, 5), merged);
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.wapitia.stream.MetricsRegistry;
+import com.wapitia.stream.StreamMetrics;
+import com.wapitia.stream.Streams;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class TestMetrics {
+
+    @Test
+    public void testMergeMetrics() {
+        final MetricsRegistry registry = new MetricsRegistry();
+        final StreamMetrics metrics = registry.metrics("merge", 2);
+        final List<StreamMetrics.Snapshot> published = new ArrayList<>();
+        registry.addListener(published::add);
+
+        final List<Integer> merged;
+        try (Stream<Integer> s = Streams.streamFlatten(
+            Arrays.asList(Stream.of(1, 2, 3, 4, 5), Stream.of(10, 11)),
+            Comparator.<Integer>naturalOrder(), metrics))
+        {
+            merged = s.collect(Collectors.toList());
+            registry.publish();
+        }
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 10, 11), merged);
+        assertEquals(1, published.size());
+
+        final StreamMetrics.Snapshot snap = published.get(0);
+        assertEquals("merge", snap.name());
+        assertEquals(5L, snap.emitted(0));
+        assertEquals(2L, snap.emitted(1));
+        assertEquals(7L, snap.emitted());
+        assertTrue(snap.comparisons() > 0L);
+        // 11 was taken last, after the first source's 5
+        assertTrue(snap.headLagNanos(0) >= snap.headLagNanos(1));
+
+        // closing the stream unregisters its metrics
+        assertTrue(registry.snapshots().isEmpty());
+    }
+
+}
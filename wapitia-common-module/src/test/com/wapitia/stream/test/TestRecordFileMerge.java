@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream.test;
+
+import static org.junit.Assert.assertEquals;
+
+import com.wapitia.stream.FixedRecordLayout;
+import com.wapitia.stream.Streams;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestRecordFileMerge {
+
+    /** A 4 byte tag, then the 8 byte key. */
+    private static final FixedRecordLayout LAYOUT =
+        new FixedRecordLayout(12, 4, ByteOrder.LITTLE_ENDIAN);
+
+    private static Path write(final Path dir, final int tag,
+        final long... keys) throws IOException
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(keys.length * 12)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        for (final long key : keys) {
+            buffer.putInt(tag).putLong(key);
+        }
+        return Files.write(dir.resolve("in" + tag), buffer.array());
+    }
+
+    /**
+     * Delete what the tests may have left in {@code dir}, then the
+     * directory, so a failed assertion isn't hidden by a non-empty one.
+     */
+    private static void clean(final Path dir) throws IOException {
+        for (final String name : new String[] {"in1", "in2", "in3", "out"}) {
+            Files.deleteIfExists(dir.resolve(name));
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void testMergeToChannel() throws IOException {
+        final Path dir = Files.createTempDirectory("test-records");
+        try {
+            final List<Path> inputs = Arrays.asList(
+                write(dir, 1, 1L, 4L, 4L, 9L),
+                write(dir, 2),
+                write(dir, 3, -5L, 4L, 10L));
+            final Path out = dir.resolve("out");
+            final long count;
+            try (FileChannel channel = FileChannel.open(out,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE))
+            {
+                count = Streams.mergeRecordFiles(inputs, LAYOUT, channel);
+            }
+            assertEquals(7L, count);
+
+            final ByteBuffer merged = ByteBuffer.wrap(Files.readAllBytes(out))
+                .order(ByteOrder.LITTLE_ENDIAN);
+            final List<String> records = new ArrayList<>();
+            while (merged.hasRemaining()) {
+                records.add(merged.getInt() + ":" + merged.getLong());
+            }
+            assertEquals(Arrays.asList("3:-5", "1:1", "1:4", "1:4", "3:4",
+                "1:9", "3:10"), records);
+        } finally {
+            clean(dir);
+        }
+    }
+
+    @Test
+    public void testMergeToSink() throws IOException {
+        final Path dir = Files.createTempDirectory("test-records");
+        try {
+            final List<Path> inputs = Arrays.asList(
+                write(dir, 1, 1L, 2L, 3L, 7L),
+                write(dir, 2, 4L, 5L, 6L));
+            final List<Integer> runs = new ArrayList<>();
+            final List<Long> firstKeys = new ArrayList<>();
+            Streams.mergeRecordFiles(inputs, LAYOUT, run -> {
+                runs.add(run.remaining() / LAYOUT.recordSize());
+                // read in the view's own byte order, as a sink would
+                firstKeys.add(run.getLong(run.position() + LAYOUT.keyOffset()));
+            });
+            assertEquals(Arrays.asList(3, 3, 1), runs);
+            assertEquals(Arrays.asList(1L, 4L, 7L), firstKeys);
+        } finally {
+            clean(dir);
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+
+package com.wapitia.stream.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.wapitia.stream.Streams;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+public class TestScan {
+
+    @Test
+    public void testSequential() {
+        assertEquals(Arrays.asList("ab", "abc", "abcd"),
+            Streams.scan(Stream.of("b", "c", "d"), "a", String::concat)
+            .collect(Collectors.toList()));
+        assertEquals(Arrays.asList(),
+            Streams.scan(Stream.<String>empty(), "a", String::concat)
+            .collect(Collectors.toList()));
+        // not SIZED, so scanned sequentially even though parallel
+        final Stream<Integer> unsized = Stream.iterate(1, i -> i + 1)
+            .limit(5).parallel();
+        final Stream<Integer> scanned = Streams.scan(unsized, 0, Integer::sum);
+        assertFalse(scanned.isParallel());
+        assertEquals(Arrays.asList(1, 3, 6, 10, 15),
+            scanned.collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testParallel() {
+        final List<BigDecimal> amounts = LongStream.rangeClosed(1, 100_000)
+            .mapToObj(BigDecimal::valueOf)
+            .collect(Collectors.toList());
+        final Stream<BigDecimal> balances = Streams.scan(
+            amounts.parallelStream(), BigDecimal.TEN, BigDecimal::add);
+        assertTrue(balances.isParallel());
+        final List<BigDecimal> all = balances.collect(Collectors.toList());
+        assertEquals(100_000, all.size());
+        for (int i = 0; i < all.size(); i += 997) {
+            final long n = i + 1L;
+            assertEquals(BigDecimal.valueOf(10L + n * (n + 1) / 2), all.get(i));
+        }
+    }
+
+    @Test
+    public void testLong() {
+        final long[] expected = new long[200_000];
+        long acc = 7L;
+        for (int i = 0; i < expected.length; i++) {
+            acc += i;
+            expected[i] = acc;
+        }
+        assertArrayEquals(expected, Streams.scanLong(
+                LongStream.range(0, 200_000).parallel(), 7L, Long::sum)
+            .toArray());
+        assertArrayEquals(expected, Streams.scanLong(
+                LongStream.range(0, 200_000), 7L, Long::sum)
+            .toArray());
+        assertArrayEquals(new long[] {3L, 3L, 5L, 5L},
+            Streams.scanLong(LongStream.of(3, 1, 5, 2), Long.MIN_VALUE,
+                Math::max)
+            .toArray());
+    }
+
+    @Test
+    public void testDouble() {
+        assertArrayEquals(new double[] {1.5, 2.0, 4.0},
+            Streams.scanDouble(DoubleStream.of(1.5, 0.5, 2.0), 0.0,
+                Double::sum)
+            .toArray(), 0.0);
+        assertArrayEquals(new double[] {2.0, 6.0, 24.0},
+            Streams.scanDouble(DoubleStream.of(2.0, 3.0, 4.0).parallel(), 1.0,
+                (a, b) -> a * b)
+            .toArray(), 0.0);
+    }
+
+    @Test
+    public void testClose() {
+        final AtomicBoolean closed = new AtomicBoolean();
+        try (Stream<Integer> scanned = Streams.scan(
+                Stream.of(1, 2, 3).onClose(() -> closed.set(true)),
+                0, Integer::sum))
+        {
+            assertEquals(Integer.valueOf(6), scanned.reduce((a, b) -> b)
+                .get());
+        }
+        assertTrue(closed.get());
+    }
+
+}
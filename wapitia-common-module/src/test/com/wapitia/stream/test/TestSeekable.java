@@ -0,0 +1,159 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+
+package com.wapitia.stream.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.wapitia.stream.FixedRecordLayout;
+import com.wapitia.stream.SeekableMerge;
+import com.wapitia.stream.SeekableSource;
+import com.wapitia.stream.Streams;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+public class TestSeekable {
+
+    private static final Comparator<Long> NATURAL = Comparator.naturalOrder();
+
+    /** A 4 byte tag, then the 8 byte key. */
+    private static final FixedRecordLayout LAYOUT =
+        new FixedRecordLayout(12, 4, ByteOrder.BIG_ENDIAN);
+
+    private static List<Long> list(final long... keys) {
+        return LongStream.of(keys).boxed().collect(Collectors.toList());
+    }
+
+    @Test
+    public void testListSource() {
+        final SeekableSource<Long> source =
+            SeekableSource.of(list(1, 3, 3, 5, 8), NATURAL);
+        source.seek(3L);
+        assertEquals(Long.valueOf(3L), source.next());
+        source.seek(4L);
+        assertEquals(Long.valueOf(5L), source.peek());
+        source.seek(0L);
+        assertEquals(Long.valueOf(1L), source.next());
+        source.seek(9L);
+        assertFalse(source.hasNext());
+        // pushed items come out last pushed first, until a seek
+        source.push(8L);
+        source.push(5L);
+        assertEquals(Long.valueOf(5L), source.next());
+        assertEquals(Long.valueOf(8L), source.peek());
+        source.seek(0L);
+        assertEquals(Long.valueOf(1L), source.next());
+    }
+
+    @Test
+    public void testMergeSeek() {
+        try (SeekableMerge<Long> merge = new SeekableMerge<>(Arrays.asList(
+                SeekableSource.of(list(1, 4, 7, 10, 13), NATURAL),
+                SeekableSource.of(new Long[] {2L, 5L, 8L, 11L}, NATURAL),
+                SeekableSource.of(list(), NATURAL)),
+            NATURAL))
+        {
+            merge.seek(5L);
+            assertEquals(Long.valueOf(5L), merge.next());
+            assertEquals(Long.valueOf(7L), merge.next());
+            // mid-merge, forward then back
+            merge.seek(11L);
+            assertEquals(Long.valueOf(11L), merge.next());
+            merge.seek(2L);
+            assertEquals(list(2, 4, 5, 7, 8, 10, 11, 13),
+                merge.stream().collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testFileSource() throws IOException {
+        final Path dir = Files.createTempDirectory("test-seekable");
+        final Path even = dir.resolve("even");
+        try {
+            // spans several read blocks
+            final ByteBuffer buffer = ByteBuffer.allocate(20_000 * 12);
+            for (long key = 0L; key < 40_000L; key += 2) {
+                buffer.putInt(0).putLong(key);
+            }
+            Files.write(even, buffer.array());
+
+            final List<SeekableSource<Long>> sources = new ArrayList<>();
+            sources.add(SeekableSource.ofFile(even, LAYOUT,
+                b -> b.getLong(b.position() + 4), Long::longValue));
+            sources.add(SeekableSource.of(list(15_001, 30_001), NATURAL));
+            final List<Long> merged;
+            try (Stream<Long> stream =
+                    Streams.streamFlattenFrom(sources, NATURAL, 14_999L))
+            {
+                merged = stream.limit(5).collect(Collectors.toList());
+            }
+            assertEquals(list(15_000, 15_001, 15_002, 15_004, 15_006),
+                merged);
+
+            try (SeekableSource<Long> source = SeekableSource.ofFile(even,
+                    LAYOUT, b -> b.getLong(b.position() + 4),
+                    Long::longValue))
+            {
+                source.seek(39_998L);
+                assertEquals(Long.valueOf(39_998L), source.next());
+                assertFalse(source.hasNext());
+                source.seek(-1L);
+                assertEquals(Long.valueOf(0L), source.next());
+                assertEquals(Long.valueOf(2L), source.next());
+                source.seek(11_001L);
+                assertEquals(Long.valueOf(11_002L), source.next());
+                source.push(11_002L);
+                assertEquals(Long.valueOf(11_002L), source.next());
+                assertEquals(Long.valueOf(11_004L), source.next());
+            }
+        } finally {
+            Files.deleteIfExists(even);
+            Files.delete(dir);
+        }
+    }
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.wapitia.stream.Streams;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class TestSortedOps {
+
+    private static final Comparator<Integer> NATURAL =
+        Comparator.naturalOrder();
+
+    @Test
+    public void testIntersect() {
+        assertEquals(Arrays.asList(2, 2, 5, 9),
+            Streams.intersect(Stream.of(1, 2, 2, 4, 5, 7, 9, 10),
+                Stream.of(2, 3, 5, 5, 6, 9), NATURAL)
+            .collect(Collectors.toList()));
+        assertEquals(Arrays.asList(),
+            Streams.intersect(Stream.of(1, 2), Stream.<Integer>empty(),
+                NATURAL)
+            .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testDifference() {
+        assertEquals(Arrays.asList(1, 4, 7, 10, 11),
+            Streams.difference(Stream.of(1, 2, 2, 4, 5, 7, 9, 10, 11),
+                Stream.of(2, 3, 5, 5, 6, 9), NATURAL)
+            .collect(Collectors.toList()));
+        assertEquals(Arrays.asList(1, 2),
+            Streams.difference(Stream.of(1, 2), Stream.<Integer>empty(),
+                NATURAL)
+            .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testUnion() {
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 9, 12),
+            Streams.union(Stream.of(1, 2, 2, 4, 5, 9),
+                Stream.of(2, 3, 5, 5, 6, 9, 12), NATURAL)
+            .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testMergeJoins() {
+        List<String> left = Arrays.asList("a1", "b1", "b2", "d1", "e1");
+        List<String> right = Arrays.asList("b9", "b8", "c9", "e9");
+        Function<String, Character> key = s -> s.charAt(0);
+
+        assertEquals(Arrays.asList("b1b9", "b1b8", "b2b9", "b2b8", "e1e9"),
+            Streams.innerMergeJoin(left.stream(), right.stream(),
+                key, key, Comparator.<Character>naturalOrder(),
+                (l, r) -> l + r)
+            .collect(Collectors.toList()));
+
+        assertEquals(Arrays.asList("a1null", "b1b9", "b1b8", "b2b9", "b2b8",
+                "d1null", "e1e9"),
+            Streams.leftMergeJoin(left.stream(), right.stream(),
+                key, key, Comparator.<Character>naturalOrder(),
+                (l, r) -> l + r)
+            .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testGroupAdjacent() {
+        Function<String, Character> key = s -> s.charAt(0);
+        assertEquals("a=[a1, a2], b=[b1], a=[a3], c=[c1, c2]",
+            Streams.groupAdjacent(
+                Stream.of("a1", "a2", "b1", "a3", "c1", "c2"), key,
+                Collectors.toList())
+            .map(Object::toString)
+            .collect(Collectors.joining(", ")));
+        assertEquals(0L, Streams.groupAdjacent(Stream.<String>empty(), key,
+            Collectors.counting()).count());
+    }
+
+    @Test
+    public void testReduceAdjacent() {
+        assertEquals(Arrays.asList("1=3", "2=9", "3=7"),
+            Streams.reduceAdjacent(Stream.of(10, 11, 12, 20, 29, 37),
+                i -> i / 10, i -> i % 10, Integer::sum)
+            .map(Object::toString)
+            .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testMergeCollapse() {
+        Comparator<String> byKey = Comparator.comparing(s -> s.charAt(0));
+        assertEquals(Arrays.asList("a1", "b1", "c2", "d3"),
+            Streams.mergeCollapse(Arrays.asList(
+                    Stream.of("a1", "b1"),
+                    Stream.of("a2", "c2", "c2x"),
+                    Stream.of("b3", "d3")),
+                byKey)
+            .collect(Collectors.toList()));
+        assertEquals(Arrays.asList("a1+a2", "b1+b3", "c2+c2x", "d3"),
+            Streams.mergeCollapse(Arrays.asList(
+                    Stream.of("a1", "b1"),
+                    Stream.of("a2", "c2", "c2x"),
+                    Stream.of("b3", "d3")),
+                byKey, (x, y) -> x + "+" + y)
+            .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testSortBounded() {
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8),
+            Streams.sortBounded(Stream.of(2, 1, 4, 3, 6, 5, 8, 7), NATURAL, 1)
+            .collect(Collectors.toList()));
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6),
+            Streams.sortBounded(Stream.of(3, 1, 2, 6, 4, 5), NATURAL, 2)
+            .collect(Collectors.toList()));
+        // equal elements keep their order
+        assertEquals(Arrays.asList("a1", "a2", "b1", "b2"),
+            Streams.sortBounded(Stream.of("b1", "a1", "a2", "b2"),
+                Comparator.comparing((String s) -> s.charAt(0)), 2)
+            .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testSortBoundedLate() {
+        try {
+            Streams.sortBounded(Stream.of(2, 3, 4, 1), NATURAL, 1)
+                .forEach(i -> { });
+            fail("expected the late element to fail the sort");
+        } catch (final IllegalStateException e) {
+            // expected
+        }
+        final List<Integer> late = new ArrayList<>();
+        assertEquals(Arrays.asList(2, 3, 4, 5),
+            Streams.sortBounded(Stream.of(2, 3, 4, 1, 5), NATURAL, 1,
+                late::add)
+            .collect(Collectors.toList()));
+        assertEquals(Arrays.asList(1), late);
+    }
+
+    @Test
+    public void testSortBoundedByKey() {
+        final List<Long> late = new ArrayList<>();
+        assertEquals(Arrays.asList(100L, 103L, 105L, 110L, 112L, 120L),
+            Streams.sortBoundedByKey(
+                    Stream.of(103L, 100L, 110L, 105L, 120L, 112L, 101L),
+                    Long::longValue, 10, late::add)
+            .collect(Collectors.toList()));
+        assertEquals(Arrays.asList(101L), late);
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.wapitia.stream.Streams;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+public class TestTopK {
+
+    @Test
+    public void testTopK() {
+        final List<Integer> data = new Random(42).ints(10_000, 0, 1_000_000)
+            .boxed().collect(Collectors.toList());
+        final Comparator<Integer> desc = Comparator.reverseOrder();
+        assertEquals(
+            data.stream().sorted(desc).limit(25).collect(Collectors.toList()),
+            data.stream().collect(Streams.topK(desc, 25)));
+        assertEquals(
+            data.stream().sorted(desc).limit(25).collect(Collectors.toList()),
+            data.parallelStream().collect(Streams.topK(desc, 25)));
+        assertEquals(Arrays.asList(),
+            data.stream().collect(Streams.topK(desc, 0)));
+        assertEquals(Arrays.asList(1, 2),
+            Stream.of(2, 1).collect(Streams.topK(Comparator.naturalOrder(),
+                5)));
+    }
+
+    @Test
+    public void testTopKTies() {
+        final List<Integer> data = IntStream.range(0, 10_000).boxed()
+            .collect(Collectors.toList());
+        Collections.shuffle(data, new Random(11));
+        // only 50 distinct keys, so the cut falls among equal items
+        final Comparator<Integer> byKey = Comparator.comparingInt(i -> i % 50);
+        final List<Integer> expected = data.stream().sorted(byKey).limit(230)
+            .collect(Collectors.toList());
+        assertEquals(expected, data.stream().collect(Streams.topK(byKey, 230)));
+        assertEquals(expected,
+            data.parallelStream().collect(Streams.topK(byKey, 230)));
+    }
+
+    @Test
+    public void testTopKBeyondStream() {
+        // the heaps hold what the stream has, not k
+        assertEquals(Arrays.asList(0, 1, 2), IntStream.range(0, 3).boxed()
+            .collect(Streams.topK(Comparator.naturalOrder(),
+                Integer.MAX_VALUE)));
+        final List<Integer> data = IntStream.range(0, 1000).boxed()
+            .collect(Collectors.toList());
+        assertEquals(data, data.parallelStream()
+            .collect(Streams.topK(Comparator.naturalOrder(),
+                Integer.MAX_VALUE)));
+        assertArrayEquals(LongStream.range(0, 1000).toArray(),
+            Streams.topKLong(LongStream.range(0, 1000).parallel(),
+                Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testPrimitiveTopK() {
+        final long[] data = new Random(7).longs(10_000).toArray();
+        final long[] expected = Arrays.stream(data).sorted().limit(100)
+            .toArray();
+        assertArrayEquals(expected,
+            Streams.topKLong(Arrays.stream(data).parallel(), 100));
+        assertArrayEquals(new int[] {9, 8, 7},
+            Streams.topKInt(Arrays.stream(new int[] {3, 9, 7, 1, 8}), 3,
+                (a, b) -> Integer.compare(b, a)));
+    }
+
+    @Test
+    public void testLimitedFlatten() {
+        final AtomicInteger late = new AtomicInteger();
+        final boolean[] closed = new boolean[3];
+        final List<Stream<Integer>> streams = Arrays.asList(
+            Stream.of(1, 4, 7, 10).onClose(() -> closed[0] = true),
+            Stream.of(2, 5, 8).onClose(() -> closed[1] = true),
+            Stream.of(100, 101, 102).peek(i -> late.incrementAndGet())
+                .onClose(() -> closed[2] = true));
+        // the third stream's head is beyond the second least head
+        try (Stream<Integer> merged = Streams.streamFlatten(streams,
+            Comparator.<Integer>naturalOrder(), 2))
+        {
+            assertEquals(Arrays.asList(1, 2),
+                merged.collect(Collectors.toList()));
+            assertEquals(1, late.get());
+            // closed once it is left out, the others with the result
+            assertEquals("[false, false, true]", Arrays.toString(closed));
+        }
+        assertEquals("[true, true, true]", Arrays.toString(closed));
+        assertEquals(0L, Streams.streamFlatten(
+            Arrays.asList(Stream.of(1)), Comparator.<Integer>naturalOrder(),
+            0).count());
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream.test;
+
+import static java.util.stream.IntStream.range;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.wapitia.stream.Streams;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@SuppressWarnings("deprecation")
+public class TestWhileSpliter {
+
+    @Test
+    public void testSequential() {
+
+        assertEquals(Arrays.asList(1, 2, 4, 8, 16, 32, 64),
+            Streams.takeWhile(Stream.iterate(1, i -> 2 * i), i -> i < 100)
+                .collect(Collectors.toList()));
+
+        assertEquals(Arrays.asList(5, 1, 7),
+            Streams.dropWhile(Stream.of(1, 3, 5, 1, 7), i -> i < 4)
+                .collect(Collectors.toList()));
+
+        assertEquals(Collections.emptyList(),
+            Streams.dropWhile(Stream.of(1, 2), i -> i < 4)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testParallel() {
+
+        // the condition first fails at 70_001, then passes again
+        List<Integer> data = range(0, 200_000)
+            .map(i -> i > 70_000 && i < 70_010 ? -1 : i)
+            .boxed()
+            .collect(Collectors.toList());
+
+        List<Integer> taken = Streams.takeWhile(
+                data.parallelStream(), i -> i >= 0)
+            .map(i -> i + 1)
+            .collect(Collectors.toList());
+        assertEquals(range(1, 70_002).boxed().collect(Collectors.toList()),
+            taken);
+
+        List<Integer> dropped = Streams.dropWhile(
+                data.parallelStream(), i -> i >= 0)
+            .collect(Collectors.toList());
+        assertEquals(data.subList(70_001, 200_000), dropped);
+
+        assertEquals(200_000L,
+            Streams.takeWhile(data.parallelStream(), i -> true).count());
+    }
+
+    @Test
+    public void testParallelEndless() {
+
+        assertEquals(range(0, 5000).boxed().collect(Collectors.toList()),
+            Streams.takeWhile(Stream.iterate(0, i -> i + 1).parallel(),
+                i -> i < 5000)
+            .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testClose() {
+
+        AtomicBoolean closed = new AtomicBoolean();
+        try (Stream<Integer> s = Streams.takeWhile(
+            Stream.of(1, 2, 3).onClose(() -> closed.set(true)), i -> i < 2))
+        {
+            assertEquals(1L, s.count());
+        }
+        assertTrue(closed.get());
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.wapitia.stream.Streams;
+
+import org.junit.Test;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class TestWindows {
+
+    @Test
+    public void testChunked() {
+        assertEquals(Arrays.asList(
+                Arrays.asList(1, 2, 3), Arrays.asList(4, 5, 6),
+                Arrays.asList(7)),
+            Streams.chunked(Stream.of(1, 2, 3, 4, 5, 6, 7), 3)
+            .collect(Collectors.toList()));
+        assertEquals(0L, Streams.chunked(Stream.empty(), 3).count());
+    }
+
+    @Test
+    public void testSliding() {
+        assertEquals(Arrays.asList(
+                Arrays.asList(1, 2, 3), Arrays.asList(2, 3, 4),
+                Arrays.asList(3, 4, 5)),
+            Streams.sliding(Stream.of(1, 2, 3, 4, 5), 3, 1)
+            .collect(Collectors.toList()));
+        assertEquals(Arrays.asList(
+                Arrays.asList(1, 2, 3), Arrays.asList(5, 6, 7)),
+            Streams.sliding(Stream.of(1, 2, 3, 4, 5, 6, 7, 8), 3, 4)
+            .collect(Collectors.toList()));
+        assertEquals(0L, Streams.sliding(Stream.of(1, 2), 3, 1).count());
+    }
+
+    @Test
+    public void testReuse() {
+        final List<List<Integer>> seen = new ArrayList<>();
+        final List<List<Integer>> copies = new ArrayList<>();
+        Streams.sliding(IntStream.range(0, 10).boxed(), 4, 3, true)
+            .forEach(w -> {
+                seen.add(w);
+                copies.add(new ArrayList<>(w));
+            });
+        assertEquals(Arrays.asList(
+                Arrays.asList(0, 1, 2, 3), Arrays.asList(3, 4, 5, 6),
+                Arrays.asList(6, 7, 8, 9)),
+            copies);
+        assertSame(seen.get(0), seen.get(2));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnly() {
+        Streams.chunked(Stream.of(1, 2, 3), 2)
+            .forEach(w -> w.set(0, 9));
+    }
+
+    @Test
+    public void testSizes() {
+        final Spliterator<List<Integer>> chunks =
+            Streams.chunked(IntStream.range(0, 10).boxed(), 4).spliterator();
+        assertEquals(3L, chunks.getExactSizeIfKnown());
+        final Spliterator<List<Integer>> windows =
+            Streams.sliding(IntStream.range(0, 10).boxed(), 4, 2)
+            .spliterator();
+        assertEquals(4L, windows.getExactSizeIfKnown());
+        windows.tryAdvance(w -> { });
+        assertEquals(3L, windows.getExactSizeIfKnown());
+    }
+
+    @Test
+    public void testPrimitive() {
+        final List<Integer> sums = Streams
+            .slidingInt(IntStream.rangeClosed(1, 6), 3, 1, true)
+            .map(TestWindows::sum)
+            .collect(Collectors.toList());
+        assertEquals(Arrays.asList(6, 9, 12, 15), sums);
+        final List<Integer> sizes = Streams
+            .chunkedInt(IntStream.rangeClosed(1, 5), 2, false)
+            .map(IntBuffer::remaining)
+            .collect(Collectors.toList());
+        assertEquals(Arrays.asList(2, 2, 1), sizes);
+    }
+
+    private static int sum(final IntBuffer window) {
+        int result = 0;
+        for (int i = 0; i < window.limit(); i++) {
+            result += window.get(i);
+        }
+        return result;
+    }
+
+}
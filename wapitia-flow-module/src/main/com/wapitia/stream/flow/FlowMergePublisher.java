@@ -0,0 +1,322 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream.flow;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@code FlowMergePublisher<T>} is the sorted merge of
+ * {@link com.wapitia.stream.Streams#streamFlatten(List, Comparator)} over
+ * {@link Flow.Publisher}s: it publishes the least head among its sources,
+ * ties going to the source listed first.
+ *
+ * <p>Each subscriber gets its own merge, subscribing anew to every source.
+ * Sources are asked for {@code batch} elements up front and topped up as
+ * half of them are used, so at most {@code batch} elements per source are
+ * ever buffered. An element is only published once every source that isn't
+ * complete has a head buffered, and only as far as the subscriber's
+ * {@code request(n)} allows. A source failing fails the merge and cancels
+ * the other sources.
+ *
+ * <p>All signals to the subscriber come from a single drain loop, run by
+ * whichever thread delivers an element, a completion or a request, so no
+ * thread of its own is used.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> Shared type of elements of the sources
+ */
+class FlowMergePublisher<T> implements Flow.Publisher<T> {
+
+    private final List<? extends Flow.Publisher<? extends T>> sources;
+    private final Comparator<? super T> comp;
+    private final int batch;
+
+    /**
+     * Merge publishers.
+     *
+     * @param sources publishers of sorted elements. Not null.
+     * @param comp    the order of the sources and of the merge. Not null.
+     * @param batch   elements to request of a source at a time, at least 1
+     */
+    FlowMergePublisher(
+        final List<? extends Flow.Publisher<? extends T>> sources,
+        final Comparator<? super T> comp,
+        final int batch)
+    {
+        Objects.requireNonNull(sources);
+        Objects.requireNonNull(comp);
+        if (batch < 1) {
+            throw new IllegalArgumentException("batch < 1: " + batch);
+        }
+        this.sources = sources;
+        this.comp = comp;
+        this.batch = batch;
+    }
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber);
+        final Merge merge = new Merge(subscriber);
+        subscriber.onSubscribe(merge);
+        merge.start();
+    }
+
+    /**
+     * The merge for one subscriber.
+     */
+    private final class Merge implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super T> downstream;
+        private final List<Inner> inners;
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicReference<Throwable> error =
+            new AtomicReference<>();
+        private volatile boolean cancelled = false;
+
+        // only touched by the drain loop
+        private boolean done = false;
+
+        Merge(final Flow.Subscriber<? super T> downstream) {
+            this.downstream = downstream;
+            this.inners = new ArrayList<>(sources.size());
+            for (int i = 0; i < sources.size(); i++) {
+                inners.add(new Inner());
+            }
+        }
+
+        void start() {
+            for (int i = 0; i < inners.size() && !cancelled; i++) {
+                sources.get(i).subscribe(inners.get(i));
+            }
+            drain();
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0L) {
+                fail(new IllegalArgumentException(
+                    "non-positive request: " + n));
+            } else {
+                requested.getAndUpdate(r ->
+                    r + n < 0L ? Long.MAX_VALUE : r + n);
+                drain();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            cancelSources();
+        }
+
+        void fail(final Throwable e) {
+            error.compareAndSet(null, e);
+            drain();
+        }
+
+        private void cancelSources() {
+            for (final Inner inner : inners) {
+                inner.cancel();
+            }
+        }
+
+        /**
+         * Run the emit loop, unless another thread is running it, in which
+         * case that thread runs it once more.
+         */
+        void drain() {
+            if (wip.getAndIncrement() == 0) {
+                int missed = 1;
+                do {
+                    emit();
+                    missed = wip.addAndGet(-missed);
+                } while (missed != 0);
+            }
+        }
+
+        private void emit() {
+            long r = requested.get();
+            long e = 0L;
+            boolean more = !done;
+            while (more) {
+                final Throwable ex = error.get();
+                if (cancelled) {
+                    more = false;
+                } else if (ex != null) {
+                    done = true;
+                    more = false;
+                    cancelSources();
+                    downstream.onError(ex);
+                } else {
+                    Inner best = null;
+                    T bestHead = null;
+                    boolean ready = true;
+                    for (int i = 0; i < inners.size() && ready; i++) {
+                        final Inner inner = inners.get(i);
+                        final boolean complete = inner.complete;
+                        final T head = inner.peek();
+                        if (head == null) {
+                            ready = complete;
+                        } else if (best == null
+                            || comp.compare(head, bestHead) < 0)
+                        {
+                            best = inner;
+                            bestHead = head;
+                        }
+                    }
+                    if (!ready) {
+                        more = false;
+                    } else if (best == null) {
+                        done = true;
+                        more = false;
+                        downstream.onComplete();
+                    } else if (e == r) {
+                        // the demand seen so far is used up, look again
+                        r = requested.addAndGet(-e);
+                        e = 0L;
+                        more = r != 0L;
+                    } else {
+                        best.poll();
+                        e++;
+                        downstream.onNext(bestHead);
+                    }
+                }
+            }
+            if (e != 0L) {
+                requested.addAndGet(-e);
+            }
+        }
+
+        /**
+         * The subscriber to one source, buffering up to {@code batch}
+         * elements in a single-producer, single-consumer ring.
+         */
+        private final class Inner implements Flow.Subscriber<T> {
+
+            private final Object[] ring = new Object[batch];
+            private final AtomicLong produced = new AtomicLong();
+            private final AtomicLong consumed = new AtomicLong();
+            private final AtomicReference<Flow.Subscription> upstream =
+                new AtomicReference<>();
+            private final int limit = Math.max(1, batch / 2);
+            private volatile boolean complete = false;
+            private int used = 0;
+
+            @Override
+            public void onSubscribe(final Flow.Subscription subscription) {
+                if (cancelled
+                    || !upstream.compareAndSet(null, subscription))
+                {
+                    subscription.cancel();
+                } else {
+                    subscription.request(batch);
+                }
+            }
+
+            @Override
+            public void onNext(final T item) {
+                Objects.requireNonNull(item);
+                final long p = produced.get();
+                if (p - consumed.get() == ring.length) {
+                    onError(new IllegalStateException(
+                        "source published more than requested"));
+                } else {
+                    ring[(int) (p % ring.length)] = item;
+                    produced.lazySet(p + 1L);
+                    drain();
+                }
+            }
+
+            @Override
+            public void onError(final Throwable throwable) {
+                complete = true;
+                fail(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                complete = true;
+                drain();
+            }
+
+            @SuppressWarnings("unchecked")
+            T peek() {
+                final long c = consumed.get();
+                return c == produced.get()
+                    ? null
+                    : (T) ring[(int) (c % ring.length)];
+            }
+
+            /**
+             * Drop the head, topping up the source once {@code limit}
+             * elements are used.
+             */
+            void poll() {
+                final long c = consumed.get();
+                ring[(int) (c % ring.length)] = null;
+                consumed.lazySet(c + 1L);
+                if (++used == limit) {
+                    used = 0;
+                    upstream.get().request(limit);
+                }
+            }
+
+            void cancel() {
+                final Flow.Subscription s = upstream.getAndSet(CANCELLED);
+                if (s != null && s != CANCELLED) {
+                    s.cancel();
+                }
+            }
+        }
+    }
+
+    private static final Flow.Subscription CANCELLED =
+        new Flow.Subscription() {
+            @Override
+            public void request(final long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        };
+}
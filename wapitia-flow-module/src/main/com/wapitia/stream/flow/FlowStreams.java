@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream.flow;
+
+import com.wapitia.stream.Streams;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link Streams} producers over {@link Flow} publishers, kept apart from
+ * {@code Streams} because {@code java.util.concurrent.Flow} needs Java 9
+ * while the rest of the library runs on Java 8.
+ *
+ * @author Corey Morgan
+ *
+ */
+public final class FlowStreams {
+
+    private FlowStreams() {
+    }
+
+    /**
+     * A {@link Flow.Publisher} of the sorted merge of publishers, with the
+     * ordering of {@link Streams#streamFlatten(List, Comparator)}: the least
+     * head among the sources is next, ties going to the source listed first.
+     *
+     * <p>Each subscriber gets its own merge, which subscribes to every
+     * source. Sources are asked for {@code batch} elements at a time, and
+     * asked for more as half of those are used. An element is published
+     * only when every source that isn't complete has a head buffered, and
+     * only as the subscriber requests. A failed source fails the merge and
+     * cancels the others. No thread is used; the merge runs on the threads
+     * of its sources and subscriber.
+     *
+     * @param <T>        Shared element type
+     * @param publishers Publishers of elements sorted by {@code comp}
+     * @param comp       Comparator comparing the heads of the sources
+     * @param batch      Elements to request of a source at a time,
+     *                   at least 1
+     * @return           A publisher of the merge
+     */
+    public static <T> Flow.Publisher<T> mergePublishers(
+        final List<? extends Flow.Publisher<? extends T>> publishers,
+        final Comparator<? super T> comp,
+        final int batch)
+    {
+        return new FlowMergePublisher<>(publishers, comp, batch);
+    }
+
+    /**
+     * A {@link Flow.Publisher} of the elements of a stream, pulled from the
+     * stream on the thread requesting them.
+     *
+     * @param <T>    Stream item type
+     * @param stream Items to publish
+     * @return       A publisher for a single subscriber
+     * @see #toPublisher(Stream, Executor)
+     */
+    public static <T> Flow.Publisher<T> toPublisher(final Stream<T> stream) {
+        return toPublisher(stream, Runnable::run);
+    }
+
+    /**
+     * A {@link Flow.Publisher} of the elements of a stream, pulled from the
+     * stream as the subscriber requests them.
+     * A stream can be read once, so only the first subscriber gets the
+     * elements; any later one is failed with an
+     * {@link IllegalStateException}. The stream is closed when it ends or
+     * fails, or the subscription is cancelled.
+     *
+     * @param <T>      Stream item type
+     * @param stream   Items to publish
+     * @param executor Runs the pulling, a task at a time
+     * @return         A publisher for a single subscriber
+     */
+    public static <T> Flow.Publisher<T> toPublisher(
+        final Stream<T> stream,
+        final Executor executor)
+    {
+        return new StreamPublisher<>(stream, executor);
+    }
+
+    /**
+     * A {@link Stream} of the elements of a {@link Flow.Publisher}.
+     * This subscribes at once and requests {@code batch} elements, then
+     * more as half of them are taken, so the buffer between the publisher
+     * and the stream holds no more than {@code batch}. Reading the stream
+     * waits for elements to arrive. The publisher's failure is thrown by
+     * the stream after the elements before it. Closing the stream cancels
+     * the subscription.
+     *
+     * @param <T>       Element type
+     * @param publisher Elements to stream
+     * @param batch     Elements to request at a time, at least 1
+     * @return          A stream of the published elements
+     */
+    public static <T> Stream<T> fromPublisher(
+        final Flow.Publisher<? extends T> publisher,
+        final int batch)
+    {
+        final PublisherIterator<T> it = new PublisherIterator<>(batch);
+        publisher.subscribe(it);
+        final Spliterator<T> spltr = Spliterators.spliteratorUnknownSize(it,
+            Spliterator.ORDERED | Spliterator.NONNULL);
+        final Stream<T> result = StreamSupport.stream(spltr, false)
+            .onClose(it::close);
+        return result;
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream.flow;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@code PublisherIterator<T>} subscribes to a {@link Flow.Publisher} and
+ * hands its elements out as a blocking {@link Iterator}.
+ *
+ * <p>{@code batch} elements are requested up front, and more as half of
+ * them are taken, so the buffer never holds more than {@code batch}. The
+ * publisher's failure is rethrown from {@link #hasNext()} after the
+ * elements before it. {@link #close()} cancels the subscription.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> type of the elements
+ */
+class PublisherIterator<T> implements Iterator<T>, Flow.Subscriber<T> {
+
+    private static final Object COMPLETE = new Object();
+
+    /**
+     * The failure of the publisher, as queued.
+     */
+    private static final class Failure {
+        final Throwable cause;
+
+        Failure(final Throwable cause) {
+            this.cause = cause;
+        }
+    }
+
+    private final int batch;
+    private final int limit;
+    private final BlockingQueue<Object> queue;
+    private final AtomicReference<Flow.Subscription> subscription =
+        new AtomicReference<>();
+    private volatile boolean closed = false;
+
+    // only touched by the consumer
+    private Object next;
+    private int used = 0;
+
+    /**
+     * An iterator waiting for a subscription.
+     *
+     * @param batch elements to request at a time, at least 1
+     */
+    PublisherIterator(final int batch) {
+        if (batch < 1) {
+            throw new IllegalArgumentException("batch < 1: " + batch);
+        }
+        this.batch = batch;
+        this.limit = Math.max(1, batch / 2);
+        // room for every requested element and the final signal
+        this.queue = new ArrayBlockingQueue<>(batch + 1);
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription s) {
+        if (closed || !subscription.compareAndSet(null, s)) {
+            s.cancel();
+        } else {
+            s.request(batch);
+        }
+    }
+
+    @Override
+    public void onNext(final T item) {
+        if (!queue.offer(Objects.requireNonNull(item))) {
+            subscription.get().cancel();
+            queue.clear();
+            queue.offer(new Failure(new IllegalStateException(
+                "publisher sent more than requested")));
+        }
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+        queue.offer(new Failure(throwable));
+    }
+
+    @Override
+    public void onComplete() {
+        queue.offer(COMPLETE);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = queue.take();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new CancellationException(
+                    "interrupted waiting on a publisher");
+            }
+        }
+        if (next instanceof Failure) {
+            final Throwable thrown = ((Failure) next).cause;
+            if (thrown instanceof RuntimeException) {
+                throw (RuntimeException) thrown;
+            } else if (thrown instanceof Error) {
+                throw (Error) thrown;
+            } else {
+                throw new IllegalStateException(thrown);
+            }
+        }
+        return next != COMPLETE;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final T result = (T) next;
+        next = null;
+        if (++used == limit) {
+            used = 0;
+            subscription.get().request(limit);
+        }
+        return result;
+    }
+
+    /**
+     * Cancel the subscription.
+     */
+    void close() {
+        closed = true;
+        final Flow.Subscription s = subscription.get();
+        if (s != null) {
+            s.cancel();
+        }
+    }
+}
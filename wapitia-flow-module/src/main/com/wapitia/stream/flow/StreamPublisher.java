@@ -0,0 +1,186 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream.flow;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * {@code StreamPublisher<T>} publishes the elements of a {@link Stream} as
+ * they are requested.
+ *
+ * <p>A stream can be read only once, so only the first subscriber gets its
+ * elements; later ones are failed with an {@link IllegalStateException}.
+ * Elements are pulled from the stream on the {@link Executor}, in a single
+ * drain loop at a time, and the stream is closed when it ends, fails or the
+ * subscription is cancelled.
+ *
+ * @author Corey Morgan
+ *
+ * @param <T> type of the elements
+ */
+class StreamPublisher<T> implements Flow.Publisher<T> {
+
+    private final Stream<T> stream;
+    private final Executor executor;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * Publish a stream.
+     *
+     * @param stream   the elements. Not null.
+     * @param executor runs the drain loop. Not null.
+     */
+    StreamPublisher(final Stream<T> stream, final Executor executor) {
+        this.stream = Objects.requireNonNull(stream);
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber);
+        if (subscribed.compareAndSet(false, true)) {
+            final Emitter emitter = new Emitter(subscriber);
+            subscriber.onSubscribe(emitter);
+        } else {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(final long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(
+                new IllegalStateException("stream is already published"));
+        }
+    }
+
+    /**
+     * The subscription of the single subscriber.
+     */
+    private final class Emitter implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super T> downstream;
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicLong requested = new AtomicLong();
+        private volatile boolean cancelled = false;
+        private volatile Throwable badRequest;
+
+        // only touched by the drain loop
+        private Iterator<T> items;
+        private boolean done = false;
+
+        Emitter(final Flow.Subscriber<? super T> downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0L) {
+                badRequest = new IllegalArgumentException(
+                    "non-positive request: " + n);
+            } else {
+                requested.getAndUpdate(r ->
+                    r + n < 0L ? Long.MAX_VALUE : r + n);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                emit();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            long e = 0L;
+            try {
+                if (!done && items == null && !cancelled) {
+                    items = stream.iterator();
+                }
+                while (!done) {
+                    if (cancelled) {
+                        finish();
+                    } else if (badRequest != null) {
+                        finish();
+                        downstream.onError(badRequest);
+                    } else if (!items.hasNext()) {
+                        finish();
+                        downstream.onComplete();
+                    } else if (e == requested.get()) {
+                        break;
+                    } else {
+                        final T item = items.next();
+                        e++;
+                        downstream.onNext(item);
+                    }
+                }
+            } catch (final RuntimeException | Error ex) {
+                if (!done) {
+                    finish();
+                    downstream.onError(ex);
+                }
+            }
+            if (e != 0L) {
+                requested.addAndGet(-e);
+            }
+        }
+
+        private void finish() {
+            done = true;
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016 wapitia.com
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of wapitia.com or the names of contributors may be used to
+ * endorse or promote products derived from this software without specific
+ * prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind.
+ * ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED.
+ * WAPITIA.COM ("WAPITIA") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL WAPITIA OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * WAPITIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ */
+
+package com.wapitia.stream.flow.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.wapitia.stream.flow.FlowStreams;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class TestFlow {
+
+    private static final Comparator<Integer> NATURAL =
+        Comparator.naturalOrder();
+
+    /**
+     * Records the signals it gets. It never requests by itself; tests
+     * request through its subscription.
+     */
+    private static final class Recorder implements Flow.Subscriber<Integer>
+    {
+        final List<Integer> items = new ArrayList<>();
+        Flow.Subscription subscription;
+        boolean complete = false;
+        Throwable error;
+
+        @Override
+        public void onSubscribe(final Flow.Subscription s) {
+            subscription = s;
+        }
+
+        @Override
+        public void onNext(final Integer item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            complete = true;
+        }
+    }
+
+    @Test
+    public void testMergeHonoursDemand() {
+        final Flow.Publisher<Integer> merged = FlowStreams.mergePublishers(
+            Arrays.asList(FlowStreams.toPublisher(Stream.of(1, 4, 6)),
+                FlowStreams.toPublisher(Stream.of(2, 3, 7)),
+                FlowStreams.toPublisher(Stream.<Integer>empty())),
+            NATURAL, 2);
+        final Recorder recorder = new Recorder();
+        merged.subscribe(recorder);
+        assertTrue(recorder.items.isEmpty());
+        recorder.subscription.request(3);
+        assertEquals(Arrays.asList(1, 2, 3), recorder.items);
+        recorder.subscription.request(10);
+        assertEquals(Arrays.asList(1, 2, 3, 4, 6, 7), recorder.items);
+        assertTrue(recorder.complete);
+    }
+
+    @Test
+    public void testMergeFailure() {
+        final Flow.Publisher<Integer> merged = FlowStreams.mergePublishers(
+            Arrays.asList(FlowStreams.toPublisher(Stream.of(1, 2)),
+                FlowStreams.toPublisher(Stream.of(3).map(i -> {
+                    throw new IllegalStateException("boom");
+                }))),
+            NATURAL, 4);
+        final Recorder recorder = new Recorder();
+        merged.subscribe(recorder);
+        recorder.subscription.request(10);
+        assertEquals("boom", recorder.error.getMessage());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        final SubmissionPublisher<Integer> odd = new SubmissionPublisher<>();
+        final SubmissionPublisher<Integer> even = new SubmissionPublisher<>();
+        final List<Integer> result;
+        try (Stream<Integer> merged = FlowStreams.fromPublisher(
+            FlowStreams.mergePublishers(Arrays.asList(odd, even), NATURAL, 3),
+            4))
+        {
+            for (int i = 1; i <= 9; i += 2) {
+                odd.submit(i);
+                even.submit(i + 1);
+            }
+            // closing the publishers completes the merge
+            odd.close();
+            even.close();
+            result = merged.collect(Collectors.toList());
+        }
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), result);
+    }
+
+}